@@ -0,0 +1,143 @@
+package db;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * OffHeapUserStore 의 record address 를 key 의 hash 로 찾는 open addressing(linear probing) hash table.
+ * key 자체는 저장하지 않고 record 에서 읽어 비교하므로, 항목마다 heap 에는 long 하나와 int 하나만 쓴다.
+ */
+class AddressHashTable {
+    static final long EMPTY = -1L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private long[] addresses = new long[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    AddressHashTable() {
+        Arrays.fill(addresses, EMPTY);
+    }
+
+    /**
+     * @param matches는
+     *            hash 가 같은 address 의 key 가 찾는 key 와 같은지 확인한다.
+     * @return key 의 address, 없으면 EMPTY
+     */
+    long get(int hash, LongPredicate matches) {
+        return addresses[findSlot(hash, matches)];
+    }
+
+    /**
+     * @return 같은 key 로 저장되어 있던 address, 없으면 EMPTY
+     */
+    long put(int hash, LongPredicate matches, long address) {
+        int slot = findSlot(hash, matches);
+        long old = addresses[slot];
+        addresses[slot] = address;
+        hashes[slot] = hash;
+        if (old == EMPTY && ++size > addresses.length * LOAD_FACTOR) {
+            resize();
+        }
+        return old;
+    }
+
+    /**
+     * address 가 있는 항목을 지운다. 뒤따르는 항목을 당겨 채우므로 tombstone 이 남지 않는다.
+     */
+    void remove(int hash, long address) {
+        int mask = addresses.length - 1;
+        int slot = hash & mask;
+        while (addresses[slot] != address) {
+            if (addresses[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        addresses[slot] = EMPTY;
+        size--;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (addresses[next] == EMPTY) {
+                return;
+            }
+            // next 항목이 원래 들어갈 자리가 (slot, next] 사이면 그대로 둔다.
+            int home = hashes[next] & mask;
+            boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!reachable) {
+                addresses[slot] = addresses[next];
+                hashes[slot] = hashes[next];
+                addresses[next] = EMPTY;
+                slot = next;
+            }
+        }
+    }
+
+    /**
+     * address 가 있는 항목이 replacement 를 가리키게 한다. (record 를 옮길 때)
+     */
+    void replace(int hash, long address, long replacement) {
+        int mask = addresses.length - 1;
+        for (int slot = hash & mask; addresses[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (addresses[slot] == address) {
+                addresses[slot] = replacement;
+                return;
+            }
+        }
+    }
+
+    long[] values() {
+        long[] values = new long[size];
+        int i = 0;
+        for (long address : addresses) {
+            if (address != EMPTY) {
+                values[i++] = address;
+            }
+        }
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return key 가 있는 slot, 없으면 key 를 넣을 빈 slot
+     */
+    private int findSlot(int hash, LongPredicate matches) {
+        int mask = addresses.length - 1;
+        int slot = hash & mask;
+        while (addresses[slot] != EMPTY) {
+            if (hashes[slot] == hash && matches.test(addresses[slot])) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        addresses = new long[oldAddresses.length * 2];
+        hashes = new int[oldHashes.length * 2];
+        Arrays.fill(addresses, EMPTY);
+
+        int mask = addresses.length - 1;
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] == EMPTY) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (addresses[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            addresses[slot] = oldAddresses[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * OffHeapUserStore 의 record address 를 record 의 key 순서로 정렬해 두는 index.
+ * 정렬된 long[] block 을 순서대로 이어 놓은 구조라서, 추가와 삭제는 block 하나 안에서만 배열을 옮긴다.
+ * (O(log n + BLOCK_SIZE)) key 는 저장하지 않고 comparator 가 record 에서 읽어 비교한다.
+ */
+class AddressSortedIndex {
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * address 가 가리키는 두 record 의 순서. key 가 같으면 address 로 순서를 정해야 한다.
+     */
+    interface AddressComparator {
+        int compare(long a, long b);
+    }
+
+    /**
+     * @return address 의 key 가 prefix 보다 앞이면 음수, prefix 로 시작하면 0, 뒤면 양수
+     */
+    interface PrefixMatcher {
+        int compare(long address);
+    }
+
+    private final AddressComparator comparator;
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+
+    AddressSortedIndex(AddressComparator comparator) {
+        this.comparator = comparator;
+    }
+
+    void add(long address) {
+        if (blocks.isEmpty()) {
+            blocks.add(new Block());
+        }
+        int index = blockFor(address);
+        Block block = blocks.get(index);
+        int position = block.search(address);
+        block.insert(position < 0 ? -position - 1 : position, address);
+        if (block.size == BLOCK_SIZE) {
+            blocks.add(index + 1, block.split());
+        }
+        size++;
+    }
+
+    void remove(long address) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        int index = blockFor(address);
+        Block block = blocks.get(index);
+        int position = block.search(address);
+        if (position < 0) {
+            return;
+        }
+        block.remove(position);
+        if (block.size == 0 && blocks.size() > 1) {
+            blocks.remove(index);
+        }
+        size--;
+    }
+
+    /**
+     * key 가 prefix 로 시작하는 address 를 순서대로 offset 번째부터 최대 limit 개 action 에 넘긴다.
+     */
+    void scan(PrefixMatcher prefix, int offset, int limit, LongConsumer action) {
+        int index = firstBlock(prefix);
+        int position = index < blocks.size() ? blocks.get(index).first(prefix) : 0;
+        int skipped = 0;
+        int taken = 0;
+        for (; index < blocks.size() && taken < limit; index++, position = 0) {
+            Block block = blocks.get(index);
+            for (; position < block.size && taken < limit; position++) {
+                long address = block.entries[position];
+                if (prefix.compare(address) != 0) {
+                    return;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    action.accept(address);
+                    taken++;
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 마지막 항목이 address 보다 앞서지 않는 첫 block, 없으면 마지막 block
+     */
+    private int blockFor(long address) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(blocks.get(middle).last(), address) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 마지막 항목이 prefix 보다 앞서지 않는 첫 block, 없으면 blocks.size()
+     */
+    private int firstBlock(PrefixMatcher prefix) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Block block = blocks.get(middle);
+            if (block.size == 0 || prefix.compare(block.last()) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private class Block {
+        private final long[] entries = new long[BLOCK_SIZE];
+        private int size;
+
+        long last() {
+            return entries[size - 1];
+        }
+
+        /**
+         * @return address 의 위치, 없으면 -(넣을 위치) - 1
+         */
+        int search(long address) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int result = comparator.compare(entries[middle], address);
+                if (result < 0) {
+                    low = middle + 1;
+                } else if (result > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        /**
+         * @return prefix 보다 앞서지 않는 첫 위치
+         */
+        int first(PrefixMatcher prefix) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (prefix.compare(entries[middle]) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void insert(int position, long address) {
+            System.arraycopy(entries, position, entries, position + 1, size - position);
+            entries[position] = address;
+            size++;
+        }
+
+        void remove(int position) {
+            System.arraycopy(entries, position + 1, entries, position, size - position - 1);
+            size--;
+        }
+
+        /**
+         * 뒤쪽 절반을 새 block 으로 옮긴다.
+         */
+        Block split() {
+            Block next = new Block();
+            int half = size / 2;
+            next.size = size - half;
+            System.arraycopy(entries, half, next.entries, 0, next.size);
+            size = half;
+            return next;
+        }
+    }
+}
@@ -1,24 +1,126 @@
 package db;
 
 import java.util.Collection;
-import java.util.Map;
-
-import com.google.common.collect.Maps;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import model.User;
 
+/**
+ * userId 로 찾는 기본 저장소 외에 두 종류의 보조 index 를 함께 유지한다. (UserStore)
+ * - email -> User : hash index (email 은 유일하다)
+ * - userId, name 앞부분 검색 : 정렬된 index (O(log n + offset + limit))
+ * 모든 변경은 write lock 안에서 저장소와 index 를 함께 바꾸므로 조회 시 항상 일관된 상태를 본다.
+ *
+ * 기본 저장소는 HashMap 이고, -Ddb.storage=offheap 이면 heap 밖에 User 를 압축해 저장하고
+ * index 도 primitive 배열로 유지하는 OffHeapUserStore 를 쓴다.
+ */
 public class DataBase {
-    private static Map<String, User> users = Maps.newHashMap();
+    private static final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // lock 으로 보호된다.
+    private static UserStore users = createUserStore();
+
+    private static UserStore createUserStore() {
+        return "offheap".equals(System.getProperty("db.storage")) ? new OffHeapUserStore() : new HeapUserStore();
+    }
 
-    public static void addUser(User user) {
-        users.put(user.getUserId(), user);
+    /**
+     * 저장소를 빈 저장소로 바꾼다. 테스트에서 저장소 종류마다 같은 시나리오를 돌리기 위해 쓴다.
+     */
+    static void setUserStore(UserStore userStore) {
+        lock.writeLock().lock();
+        try {
+            users = userStore;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 같은 userId 의 사용자가 있으면 새 정보로 바꾼다.
+     * @return 다른 사용자가 이미 같은 email 을 쓰고 있으면 저장하지 않고 false
+     */
+    public static boolean addUser(User user) {
+        lock.writeLock().lock();
+        try {
+            String email = UserStore.normalizeEmail(user.getEmail());
+            User owner = email == null ? null : users.getByEmail(email);
+            if (owner != null && !owner.getUserId().equals(user.getUserId())) {
+                return false;
+            }
+
+            users.put(user);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public static User findUserById(String userId) {
-        return users.get(userId);
+        lock.readLock().lock();
+        try {
+            return users.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static User findUserByEmail(String email) {
+        String normalized = UserStore.normalizeEmail(email);
+        if (normalized == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            return users.getByEmail(normalized);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static boolean existsEmail(String email) {
+        return findUserByEmail(email) != null;
+    }
+
+    /**
+     * @return userId 가 prefix 로 시작하는 사용자를 userId 순으로 offset 부터 최대 limit 명
+     */
+    public static List<User> findUsersByUserIdPrefix(String prefix, int offset, int limit) {
+        return findByPrefix(() -> users.findByUserIdPrefix(prefix, offset, limit), offset, limit);
+    }
+
+    /**
+     * @return name 이 prefix 로 시작하는 사용자를 name, userId 순으로 offset 부터 최대 limit 명
+     */
+    public static List<User> findUsersByNamePrefix(String prefix, int offset, int limit) {
+        return findByPrefix(() -> users.findByNamePrefix(prefix, offset, limit), offset, limit);
+    }
+
+    private static List<User> findByPrefix(Supplier<List<User>> query, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
+    /**
+     * @return 호출한 시점의 사용자 목록. 저장소와 상관없이 변경할 수 없는 목록이다.
+     */
     public static Collection<User> findAll() {
-        return users.values();
+        lock.readLock().lock();
+        try {
+            return users.values();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 }
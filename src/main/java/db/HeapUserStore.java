@@ -0,0 +1,104 @@
+package db;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import model.User;
+
+/**
+ * HashMap 에 User 를 저장하고, 보조 index 는 Java collection 으로 유지한다.
+ * - email -> userId : hash index (email 은 유일하다)
+ * - userId, name 앞부분 검색 : 정렬된 index (O(log n + offset + limit))
+ */
+class HeapUserStore implements UserStore {
+    // name 이 같은 사용자를 구분하기 위해 name index 의 key 는 name + SEPARATOR + userId 로 만든다.
+    private static final char SEPARATOR = '\u0000';
+
+    private final Map<String, User> users = Maps.newHashMap();
+    private final Map<String, String> userIdsByEmail = Maps.newHashMap();
+    private final NavigableSet<String> userIdIndex = Sets.newTreeSet();
+    private final NavigableMap<String, String> nameIndex = Maps.newTreeMap();
+
+    @Override
+    public User put(User user) {
+        User old = users.put(user.getUserId(), user);
+        if (old != null) {
+            removeIndexes(old);
+        }
+        addIndexes(user);
+        return old;
+    }
+
+    private void addIndexes(User user) {
+        String email = UserStore.normalizeEmail(user.getEmail());
+        if (email != null) {
+            userIdsByEmail.put(email, user.getUserId());
+        }
+        userIdIndex.add(user.getUserId());
+        if (user.getName() != null) {
+            nameIndex.put(nameKey(user), user.getUserId());
+        }
+    }
+
+    private void removeIndexes(User user) {
+        String email = UserStore.normalizeEmail(user.getEmail());
+        if (email != null) {
+            userIdsByEmail.remove(email);
+        }
+        userIdIndex.remove(user.getUserId());
+        if (user.getName() != null) {
+            nameIndex.remove(nameKey(user));
+        }
+    }
+
+    @Override
+    public User get(String userId) {
+        return users.get(userId);
+    }
+
+    @Override
+    public User getByEmail(String email) {
+        String userId = userIdsByEmail.get(email);
+        return userId == null ? null : users.get(userId);
+    }
+
+    @Override
+    public List<User> findByUserIdPrefix(String prefix, int offset, int limit) {
+        return find(userIdIndex.subSet(prefix, true, prefix + Character.MAX_VALUE, false), offset, limit);
+    }
+
+    @Override
+    public List<User> findByNamePrefix(String prefix, int offset, int limit) {
+        return find(nameIndex.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values(), offset, limit);
+    }
+
+    private List<User> find(Collection<String> userIds, int offset, int limit) {
+        return userIds.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(users::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public ImmutableList<User> values() {
+        return ImmutableList.copyOf(users.values());
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    private static String nameKey(User user) {
+        return user.getName() + SEPARATOR + user.getUserId();
+    }
+}
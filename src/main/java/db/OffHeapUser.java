@@ -0,0 +1,40 @@
+package db;
+
+import java.nio.ByteBuffer;
+
+import model.User;
+
+/**
+ * OffHeapUserStore 의 record 를 가리키는 User. field 는 getter 를 호출할 때 읽어서 만든다.
+ * segment 를 직접 참조하므로 compaction 으로 store 가 segment 를 놓아도 이 User 가 있는 동안은 읽을 수 있다.
+ */
+class OffHeapUser extends User {
+    private final ByteBuffer segment;
+    private final int offset;
+
+    OffHeapUser(ByteBuffer segment, int offset) {
+        super(null, null, null, null);
+        this.segment = segment;
+        this.offset = offset;
+    }
+
+    @Override
+    public String getUserId() {
+        return OffHeapUserStore.readField(segment, offset, OffHeapUserStore.USER_ID);
+    }
+
+    @Override
+    public String getPassword() {
+        return OffHeapUserStore.readField(segment, offset, OffHeapUserStore.PASSWORD);
+    }
+
+    @Override
+    public String getName() {
+        return OffHeapUserStore.readField(segment, offset, OffHeapUserStore.NAME);
+    }
+
+    @Override
+    public String getEmail() {
+        return OffHeapUserStore.readField(segment, offset, OffHeapUserStore.EMAIL);
+    }
+}
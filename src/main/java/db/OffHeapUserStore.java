@@ -0,0 +1,406 @@
+package db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongPredicate;
+
+import com.google.common.collect.ImmutableList;
+
+import model.User;
+
+/**
+ * User 를 heap 밖(direct ByteBuffer segment)에 byte 로 이어 붙여 저장한다.
+ * 사용자가 아주 많을 때 User 객체와 String 의 header, pointer 비용과 GC 부담을 없애기 위한 저장소이다.
+ *
+ * record : [short 길이][UTF-8 byte] x 4 (userId, password, name, email), 길이가 -1 이면 null
+ * address : (segment 번호 << 32) | segment 안의 offset
+ *
+ * index 는 모두 address 만 primitive 배열에 담고, key 는 record 에서 읽어 비교한다.
+ * - userId -> address, email -> address : AddressHashTable
+ * - userId, (name, userId) 순서 : AddressSortedIndex. 순서는 UTF-8 byte 순서(= code point 순서)이다.
+ *
+ * 수정하면 새 record 를 뒤에 덧붙이고 index 만 바꾸므로 이미 쓴 record 는 변하지 않는다.
+ * 그래서 get() 이 돌려준 OffHeapUser 는 lock 없이 나중에 field 를 읽어도 안전하다.
+ *
+ * 수정으로 버려진 record 의 byte 는 segment 마다 세어 두고, 다 쓴 segment 에서 버려진 byte 가 쓴 byte 의
+ * 절반 이상이 되면 살아 있는 record 를 current segment 로 옮기고 그 segment 를 놓는다. (compaction)
+ * 놓은 segment 는 덮어쓰지 않고, 그 segment 를 참조하는 OffHeapUser 가 모두 GC 된 뒤에 direct memory 가 해제된다.
+ * current segment 는 compaction 하지 않으므로 allocatedBytes() 는 liveBytes() 의 2배에 segment 두 개 정도를
+ * 더한 크기까지 커질 수 있다.
+ */
+class OffHeapUserStore implements UserStore {
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final short NULL_LENGTH = -1;
+    private static final int FIELD_COUNT = 4;
+
+    static final int USER_ID = 0;
+    static final int PASSWORD = 1;
+    static final int NAME = 2;
+    static final int EMAIL = 3;
+
+    private final int segmentSize;
+    // compaction 으로 놓은 segment 는 null 로 남겨 segment 번호를 다시 쓰지 않는다.
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private ByteBuffer current;
+    private int[] deadBytes = new int[0];
+    private long liveBytes;
+
+    private final AddressHashTable userIds = new AddressHashTable();
+    private final AddressHashTable emails = new AddressHashTable();
+    private final AddressSortedIndex userIdIndex = new AddressSortedIndex(this::compareUserId);
+    private final AddressSortedIndex nameIndex = new AddressSortedIndex(this::compareName);
+
+    OffHeapUserStore() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    OffHeapUserStore(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public User put(User user) {
+        byte[][] fields = {
+                encode(user.getUserId()), encode(user.getPassword()), encode(user.getName()), encode(user.getEmail())
+        };
+        if (fields[USER_ID] == null) {
+            throw new IllegalArgumentException("userId must not be null");
+        }
+
+        int segmentCount = segments.size();
+        long address = append(fields);
+        byte[] userId = fields[USER_ID];
+        long old = userIds.put(hash(userId), candidate -> fieldEquals(candidate, USER_ID, userId), address);
+        if (old != AddressHashTable.EMPTY) {
+            removeIndexes(old);
+        }
+        addIndexes(address, UserStore.normalizeEmail(user.getEmail()), fields[NAME] != null);
+        if (old == AddressHashTable.EMPTY) {
+            return null;
+        }
+
+        User previous = toUser(old);
+        markDead(old);
+        if (segments.size() > segmentCount && segmentCount > 0) {
+            compactIfNeeded(segmentCount - 1);
+        }
+        compactIfNeeded(segmentIndex(old));
+        return previous;
+    }
+
+    private void addIndexes(long address, String email, boolean hasName) {
+        if (email != null) {
+            emails.put(hash(email), emailEquals(email), address);
+        }
+        userIdIndex.add(address);
+        if (hasName) {
+            nameIndex.add(address);
+        }
+    }
+
+    /**
+     * 바뀌기 전 record 의 email, name 으로 index 에서 찾아 지운다.
+     */
+    private void removeIndexes(long address) {
+        String email = UserStore.normalizeEmail(readField(address, EMAIL));
+        if (email != null) {
+            emails.remove(hash(email), address);
+        }
+        userIdIndex.remove(address);
+        if (fieldLength(address, NAME) != NULL_LENGTH) {
+            nameIndex.remove(address);
+        }
+    }
+
+    @Override
+    public User get(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        byte[] key = encode(userId);
+        return toUser(userIds.get(hash(key), candidate -> fieldEquals(candidate, USER_ID, key)));
+    }
+
+    @Override
+    public User getByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return toUser(emails.get(hash(email), emailEquals(email)));
+    }
+
+    private LongPredicate emailEquals(String email) {
+        return candidate -> email.equals(UserStore.normalizeEmail(readField(candidate, EMAIL)));
+    }
+
+    @Override
+    public List<User> findByUserIdPrefix(String prefix, int offset, int limit) {
+        byte[] key = encode(prefix);
+        return find(userIdIndex, address -> comparePrefix(address, USER_ID, key), offset, limit);
+    }
+
+    @Override
+    public List<User> findByNamePrefix(String prefix, int offset, int limit) {
+        byte[] key = encode(prefix);
+        return find(nameIndex, address -> comparePrefix(address, NAME, key), offset, limit);
+    }
+
+    private List<User> find(AddressSortedIndex index, AddressSortedIndex.PrefixMatcher prefix, int offset, int limit) {
+        List<User> users = new ArrayList<>();
+        index.scan(prefix, offset, limit, address -> users.add(toUser(address)));
+        return users;
+    }
+
+    @Override
+    public ImmutableList<User> values() {
+        ImmutableList.Builder<User> users = ImmutableList.builder();
+        for (long address : userIds.values()) {
+            users.add(toUser(address));
+        }
+        return users.build();
+    }
+
+    @Override
+    public int size() {
+        return userIds.size();
+    }
+
+    /**
+     * @return 살아 있는 record 가 차지하는 byte 수
+     */
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * @return 놓지 않은 segment 의 크기 합. 버려진 record 와 segment 끝의 빈 공간을 포함한다.
+     */
+    long allocatedBytes() {
+        return segments.stream().filter(segment -> segment != null).count() * segmentSize;
+    }
+
+    private String readField(long address, int field) {
+        return readField(segment(address), (int) address, field);
+    }
+
+    static String readField(ByteBuffer segment, int recordOffset, int field) {
+        if (segment.getShort(fieldOffset(segment, recordOffset, field)) == NULL_LENGTH) {
+            return null;
+        }
+        return new String(readBytes(segment, recordOffset, field), StandardCharsets.UTF_8);
+    }
+
+    private User toUser(long address) {
+        return address == AddressHashTable.EMPTY ? null : new OffHeapUser(segment(address), (int) address);
+    }
+
+    private long append(byte[][] fields) {
+        int recordSize = 0;
+        for (byte[] field : fields) {
+            recordSize += Short.BYTES + (field == null ? 0 : field.length);
+        }
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("User record too large: " + recordSize + " bytes");
+        }
+
+        long address = reserve(recordSize);
+        for (byte[] field : fields) {
+            if (field == null) {
+                current.putShort(NULL_LENGTH);
+            } else {
+                current.putShort((short) field.length);
+                current.put(field);
+            }
+        }
+        liveBytes += recordSize;
+        return address;
+    }
+
+    /**
+     * @return current segment 에 recordSize 만큼 쓸 address. 자리가 없으면 새 segment 를 만든다.
+     */
+    private long reserve(int recordSize) {
+        if (current == null || current.remaining() < recordSize) {
+            current = ByteBuffer.allocateDirect(segmentSize);
+            segments.add(current);
+            deadBytes = Arrays.copyOf(deadBytes, segments.size());
+        }
+        return ((long) (segments.size() - 1) << 32) | current.position();
+    }
+
+    private void markDead(long address) {
+        int size = recordSize(segment(address), (int) address);
+        deadBytes[segmentIndex(address)] += size;
+        liveBytes -= size;
+    }
+
+    private void compactIfNeeded(int index) {
+        ByteBuffer segment = segments.get(index);
+        if (segment == null || segment == current || deadBytes[index] * 2L < segment.position()) {
+            return;
+        }
+
+        int offset = 0;
+        while (offset < segment.position()) {
+            long address = ((long) index << 32) | offset;
+            int size = recordSize(segment, offset);
+            byte[] userId = readBytes(segment, offset, USER_ID);
+            if (userIds.get(hash(userId), candidate -> candidate == address) == address) {
+                relocate(address, userId, size);
+            }
+            offset += size;
+        }
+        segments.set(index, null);
+        deadBytes[index] = 0;
+    }
+
+    /**
+     * 살아 있는 record 를 current segment 로 복사하고 모든 index 가 새 address 를 가리키게 한다.
+     */
+    private void relocate(long address, byte[] userId, int size) {
+        long moved = reserve(size);
+        ByteBuffer source = segment(address).duplicate();
+        source.limit((int) address + size).position((int) address);
+        current.put(source);
+
+        userIds.replace(hash(userId), address, moved);
+        String email = UserStore.normalizeEmail(readField(address, EMAIL));
+        if (email != null) {
+            emails.replace(hash(email), address, moved);
+        }
+        userIdIndex.remove(address);
+        userIdIndex.add(moved);
+        if (fieldLength(address, NAME) != NULL_LENGTH) {
+            nameIndex.remove(address);
+            nameIndex.add(moved);
+        }
+    }
+
+    private ByteBuffer segment(long address) {
+        return segments.get(segmentIndex(address));
+    }
+
+    private static int segmentIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int recordSize(ByteBuffer segment, int offset) {
+        return fieldOffset(segment, offset, FIELD_COUNT) - offset;
+    }
+
+    private static byte[] readBytes(ByteBuffer segment, int recordOffset, int field) {
+        int offset = fieldOffset(segment, recordOffset, field);
+        byte[] bytes = new byte[Math.max(segment.getShort(offset), 0)];
+        ByteBuffer view = segment.duplicate();
+        view.position(offset + Short.BYTES);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private static int fieldOffset(ByteBuffer segment, long address, int field) {
+        int offset = (int) address;
+        for (int i = 0; i < field; i++) {
+            offset += Short.BYTES + Math.max(segment.getShort(offset), 0);
+        }
+        return offset;
+    }
+
+    private short fieldLength(long address, int field) {
+        ByteBuffer segment = segment(address);
+        return segment.getShort(fieldOffset(segment, address, field));
+    }
+
+    private boolean fieldEquals(long address, int field, byte[] key) {
+        ByteBuffer segment = segment(address);
+        int offset = fieldOffset(segment, address, field);
+        if (segment.getShort(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(offset + Short.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareUserId(long a, long b) {
+        int result = compareField(a, b, USER_ID);
+        return result != 0 ? result : Long.compare(a, b);
+    }
+
+    private int compareName(long a, long b) {
+        int result = compareField(a, b, NAME);
+        if (result == 0) {
+            result = compareField(a, b, USER_ID);
+        }
+        return result != 0 ? result : Long.compare(a, b);
+    }
+
+    /**
+     * 두 record 의 field 를 unsigned byte 순서로 비교한다. null field 는 index 에 넣지 않는다.
+     */
+    private int compareField(long a, long b, int field) {
+        ByteBuffer segmentA = segment(a);
+        ByteBuffer segmentB = segment(b);
+        int offsetA = fieldOffset(segmentA, a, field);
+        int offsetB = fieldOffset(segmentB, b, field);
+        int lengthA = segmentA.getShort(offsetA);
+        int lengthB = segmentB.getShort(offsetB);
+
+        int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            int result = Integer.compare(segmentA.get(offsetA + Short.BYTES + i) & 0xff,
+                    segmentB.get(offsetB + Short.BYTES + i) & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(lengthA, lengthB);
+    }
+
+    /**
+     * AddressSortedIndex.PrefixMatcher 규약대로 field 를 prefix 와 비교한다.
+     */
+    private int comparePrefix(long address, int field, byte[] prefix) {
+        ByteBuffer segment = segment(address);
+        int offset = fieldOffset(segment, address, field);
+        int length = segment.getShort(offset);
+
+        int common = Math.min(length, prefix.length);
+        for (int i = 0; i < common; i++) {
+            int result = Integer.compare(segment.get(offset + Short.BYTES + i) & 0xff, prefix[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return length >= prefix.length ? 0 : -1;
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("User field too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int hash(byte[] key) {
+        return spread(Arrays.hashCode(key));
+    }
+
+    private static int hash(String key) {
+        return spread(key.hashCode());
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
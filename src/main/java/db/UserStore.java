@@ -0,0 +1,49 @@
+package db;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.collect.ImmutableList;
+
+import model.User;
+
+/**
+ * userId 로 User 를 저장하고, email 과 userId, name 앞부분으로 찾기 위한 보조 index 를 함께 유지한다.
+ * 동기화는 DataBase 가 맡는다.
+ */
+interface UserStore {
+    /**
+     * 같은 userId 의 User 가 있으면 바꾸고, 보조 index 도 새 정보에 맞게 고친다.
+     * @return 같은 userId 로 저장되어 있던 User, 없으면 null
+     */
+    User put(User user);
+
+    User get(String userId);
+
+    /**
+     * @param email는
+     *            normalizeEmail 로 정규화한 email
+     */
+    User getByEmail(String email);
+
+    /**
+     * @return userId 가 prefix 로 시작하는 사용자를 userId 순으로 offset 부터 최대 limit 명
+     */
+    List<User> findByUserIdPrefix(String prefix, int offset, int limit);
+
+    /**
+     * @return name 이 prefix 로 시작하는 사용자를 name, userId 순으로 offset 부터 최대 limit 명
+     */
+    List<User> findByNamePrefix(String prefix, int offset, int limit);
+
+    /**
+     * @return 호출한 시점의 모든 User
+     */
+    ImmutableList<User> values();
+
+    int size();
+
+    static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
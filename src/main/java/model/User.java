@@ -31,6 +31,7 @@ public class User {
 
     @Override
     public String toString() {
-        return "User [userId=" + userId + ", password=" + password + ", name=" + name + ", email=" + email + "]";
+        return "User [userId=" + getUserId() + ", password=" + getPassword() + ", name=" + getName() + ", email="
+                + getEmail() + "]";
     }
 }
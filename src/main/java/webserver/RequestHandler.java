@@ -6,16 +6,19 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import db.DataBase;
 import model.HttpRequest;
 import model.HttpResponse;
 import model.SecurityRules;
 import model.User;
+import webserver.http2.Http2Connection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +26,8 @@ public class RequestHandler extends Thread {
     private static final Logger log = LoggerFactory.getLogger(RequestHandler.class);
 
     private final Socket connection;
+    private final Consumer<RequestHandler> onFinished;
+    private volatile Http2Connection http2Connection;
 
     private static final RequestHandler INSTANCE = new RequestHandler();
 
@@ -49,17 +54,37 @@ public class RequestHandler extends Thread {
         void accept(T t, U u) throws E;
     }
 
-    private RequestHandler() {this.connection = null;}
+    private RequestHandler() {
+        this.connection = null;
+        this.onFinished = null;
+    }
 
     public RequestHandler(Socket connectionSocket) {
+        this(connectionSocket, handler -> {});
+    }
+
+    /**
+     * @param onFinished는
+     *            연결 처리가 끝나면 (예외가 나도) 호출된다.
+     */
+    public RequestHandler(Socket connectionSocket, Consumer<RequestHandler> onFinished) {
         this.connection = connectionSocket;
+        this.onFinished = onFinished;
     }
 
     public void run() {
         log.debug("New Client Connect! Connected IP : {}, Port : {}", connection.getInetAddress(),
                 connection.getPort());
 
-        try (InputStream in = connection.getInputStream(); OutputStream out = connection.getOutputStream()) {
+        try (InputStream in = new BufferedInputStream(connection.getInputStream());
+             OutputStream out = connection.getOutputStream()) {
+            // h2c prior knowledge 또는 ALPN 으로 h2 가 선택된 연결은 connection preface 로 시작한다.
+            if (WebServer.HTTP2_ENABLED && startsWithHttp2Preface(in)) {
+                http2Connection = new Http2Connection(connection, in, out, this::handleRequest);
+                http2Connection.serve();
+                return;
+            }
+
             // TODO 사용자 요청에 대한 처리는 이 곳에 구현하면 된다.
             HttpRequest httpRequest = new HttpRequest(in);
             log.info("method: {}", httpRequest.getMethod());
@@ -67,6 +92,36 @@ public class RequestHandler extends Thread {
             handleRequest(httpRequest, out);
         } catch (IOException e) {
             log.error(e.getMessage());
+        } finally {
+            onFinished.accept(this);
+        }
+    }
+
+    private boolean startsWithHttp2Preface(InputStream in) throws IOException {
+        // HTTP/1.1 에는 PRI 메서드가 없으므로 앞의 3 byte 만 보고 판단한다.
+        int prefixLength = 3;
+        in.mark(prefixLength);
+        byte[] prefix = in.readNBytes(prefixLength);
+        in.reset();
+        return Arrays.equals(prefix, Arrays.copyOf(Http2Connection.PREFACE, prefixLength));
+    }
+
+    /**
+     * HTTP/2 연결이면 GOAWAY 를 보내 처리 중인 stream 만 마치고 닫히게 한다.
+     * HTTP/1.1 연결은 요청 하나를 처리하고 닫히므로 할 일이 없다.
+     */
+    public void shutdown() {
+        Http2Connection http2 = http2Connection;
+        if (http2 != null) {
+            http2.shutdown();
+        }
+    }
+
+    public void closeConnection() {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            log.error(e.getMessage());
         }
     }
 
@@ -168,7 +223,11 @@ public class RequestHandler extends Thread {
 
         User user = new User(userId, password, name, email);
 
-        DataBase.addUser(user);
+        if (!DataBase.addUser(user)) {
+            log.info("Duplicate email: {}", email);
+            response303Header(dos, "form.html");
+            return;
+        }
 
         log.info("userID: {}", userId);
         response303Header(dos, "../index.html");
@@ -0,0 +1,45 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+public class SslContextFactory {
+    private static final int SESSION_CACHE_SIZE = Integer.getInteger("webserver.sslSessionCacheSize", 20_000);
+    private static final int SESSION_TIMEOUT_SECONDS = Integer.getInteger("webserver.sslSessionTimeoutSeconds", 86_400);
+
+    /**
+     * 재접속한 클라이언트는 서버 세션 캐시로 full handshake 없이 세션을 재개한다.
+     * JDK 13 이상에서는 stateless session ticket 이 기본으로 켜져 있어 캐시 대신 ticket 으로 재개한다.
+     *
+     * @param keyStorePath는
+     *            서버 인증서와 개인키가 들어있는 keystore 파일 경로 (PKCS12 또는 JKS)
+     * @param password는
+     *            keystore 와 개인키의 비밀번호
+     * @return 세션 캐시가 설정된 서버용 SSLContext
+     */
+    public static SSLContext create(Path keyStorePath, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            keyStore.load(in, password);
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+        sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+        sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+        return sslContext;
+    }
+}
@@ -0,0 +1,339 @@
+package webserver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLParameters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * TLS handshake 를 SSLEngine 으로 non-blocking 하게 진행한다.
+ *
+ * selector thread 하나가 모든 handshake 중인 연결의 network I/O 를 맡으므로,
+ * ClientHello 를 보내지 않거나 느리게 보내는 연결이 thread 를 붙잡지 못한다.
+ * 서명, 키 교환처럼 CPU 를 쓰는 SSLEngine 의 delegated task 만 크기가 제한된 pool 에서 실행한다.
+ * handshake 가 끝난 연결은 TlsSocket 으로 감싸 onEstablished 로 넘긴다.
+ */
+class TlsHandshaker {
+    private static final Logger log = LoggerFactory.getLogger(TlsHandshaker.class);
+    private static final long SELECT_TIMEOUT_MILLIS = 500;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SSLContext sslContext;
+    private final String[] applicationProtocols;
+    private final int maxPending;
+    private final long timeoutMillis;
+    private final Consumer<Socket> onEstablished;
+
+    private final Selector selector;
+    private final ExecutorService taskExecutor;
+    private final Thread selectorThread;
+    private final Queue<Handshake> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    // selector thread 에서만 쓴다.
+    private final List<Handshake> established = new ArrayList<>();
+
+    private volatile boolean stopping;
+    private volatile long stopDeadline;
+
+    /**
+     * @param applicationProtocols는
+     *            ALPN 으로 제안할 protocol (없으면 null)
+     * @param taskThreads는
+     *            delegated task 를 실행할 thread 수
+     * @param maxPending는
+     *            동시에 handshake 중일 수 있는 연결 수. 넘으면 새 연결을 바로 닫는다.
+     */
+    TlsHandshaker(SSLContext sslContext, String[] applicationProtocols, int taskThreads, int maxPending,
+            long timeoutMillis, Consumer<Socket> onEstablished) throws IOException {
+        this.sslContext = sslContext;
+        this.applicationProtocols = applicationProtocols;
+        this.maxPending = maxPending;
+        this.timeoutMillis = timeoutMillis;
+        this.onEstablished = onEstablished;
+
+        this.selector = Selector.open();
+        this.taskExecutor = new ThreadPoolExecutor(taskThreads, taskThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPending),
+                new ThreadFactoryBuilder().setNameFormat("tls-handshake-%d").build());
+        this.selectorThread = new Thread(this::selectLoop, "tls-selector");
+        this.selectorThread.start();
+    }
+
+    /**
+     * accept 한 연결의 handshake 를 시작한다. accept thread 에서 호출하며 기다리지 않는다.
+     */
+    void submit(Socket connection) {
+        if (stopping || pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            log.warn("Too many pending TLS handshakes. Closing connection from {}", connection.getInetAddress());
+            closeQuietly(connection.getChannel());
+            return;
+        }
+
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        if (applicationProtocols != null) {
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setApplicationProtocols(applicationProtocols);
+            engine.setSSLParameters(parameters);
+        }
+
+        ready.add(new Handshake(connection.getChannel(), engine, System.currentTimeMillis() + timeoutMillis));
+        selector.wakeup();
+    }
+
+    /**
+     * 새 handshake 는 더 받지 않고, 진행 중인 handshake 는 deadline 까지 마치게 한다.
+     */
+    void shutdown(long deadline) {
+        stopDeadline = deadline;
+        stopping = true;
+        selector.wakeup();
+        try {
+            selectorThread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            taskExecutor.shutdown();
+            taskExecutor.awaitTermination(Math.max(deadline - System.currentTimeMillis(), 1), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (!stopping || (pending.get() > 0 && System.currentTimeMillis() < stopDeadline)) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+
+                Handshake handshake;
+                while ((handshake = ready.poll()) != null) {
+                    step(handshake);
+                }
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid()) {
+                        step((Handshake) key.attachment());
+                    }
+                }
+                selector.selectedKeys().clear();
+                handOff();
+
+                long now = System.currentTimeMillis();
+                for (SelectionKey key : selector.keys()) {
+                    Handshake expired = (Handshake) key.attachment();
+                    if (key.isValid() && now > expired.deadline) {
+                        fail(expired, "timeout");
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("TLS selector stopped: {}", e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                fail((Handshake) key.attachment(), "server shutdown");
+            }
+            closeQuietly(selector);
+            Handshake handshake;
+            while ((handshake = ready.poll()) != null) {
+                fail(handshake, "server shutdown");
+            }
+        }
+    }
+
+    /**
+     * handshake 상태에 따라 읽기, 쓰기, delegated task 실행을 더 진행할 수 없을 때까지 반복한다.
+     * selector thread 에서만 호출한다.
+     */
+    private void step(Handshake handshake) {
+        SSLEngine engine = handshake.engine;
+        try {
+            if (handshake.key == null) {
+                handshake.channel.configureBlocking(false);
+                handshake.key = handshake.channel.register(selector, SelectionKey.OP_READ, handshake);
+                engine.beginHandshake();
+            }
+            if (!flush(handshake)) {
+                return;
+            }
+
+            while (true) {
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_WRAP:
+                        handshake.netOut.clear();
+                        SSLEngineResult wrapped = engine.wrap(EMPTY, handshake.netOut);
+                        handshake.netOut.flip();
+                        if (wrapped.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                            handshake.netOut = ByteBuffer.allocate(handshake.netOut.capacity() * 2);
+                            handshake.netOut.flip();
+                        } else if (wrapped.getStatus() == SSLEngineResult.Status.CLOSED) {
+                            fail(handshake, "closed during handshake");
+                            return;
+                        }
+                        if (!flush(handshake)) {
+                            return;
+                        }
+                        break;
+                    case NEED_UNWRAP:
+                    case NEED_UNWRAP_AGAIN:
+                        handshake.netIn.flip();
+                        SSLEngineResult unwrapped = engine.unwrap(handshake.netIn, handshake.appIn);
+                        handshake.netIn.compact();
+                        if (unwrapped.getStatus() == SSLEngineResult.Status.CLOSED) {
+                            fail(handshake, "closed during handshake");
+                            return;
+                        }
+                        if (unwrapped.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                            int read = handshake.channel.read(handshake.netIn);
+                            if (read < 0) {
+                                fail(handshake, "closed during handshake");
+                                return;
+                            }
+                            if (read == 0) {
+                                handshake.key.interestOps(SelectionKey.OP_READ);
+                                return;
+                            }
+                        }
+                        break;
+                    case NEED_TASK:
+                        runDelegatedTasks(handshake);
+                        return;
+                    default:
+                        established(handshake);
+                        return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(handshake, e.toString());
+        }
+    }
+
+    /**
+     * @return 보낼 byte 를 모두 보냈으면 true, 남았으면 OP_WRITE 를 기다리고 false
+     */
+    private boolean flush(Handshake handshake) throws IOException {
+        handshake.channel.write(handshake.netOut);
+        if (handshake.netOut.hasRemaining()) {
+            handshake.key.interestOps(SelectionKey.OP_WRITE);
+            return false;
+        }
+        return true;
+    }
+
+    private void runDelegatedTasks(Handshake handshake) {
+        handshake.key.interestOps(0);
+        try {
+            taskExecutor.execute(() -> {
+                Runnable task;
+                while ((task = handshake.engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                ready.add(handshake);
+                selector.wakeup();
+                if (!selectorThread.isAlive()) {
+                    // selector 가 먼저 멈췄으면 ready 에 남은 연결을 닫을 thread 가 없다.
+                    ready.remove(handshake);
+                    fail(handshake, "server shutdown");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(handshake, "handshake task queue is full");
+        }
+    }
+
+    private void established(Handshake handshake) {
+        handshake.finished = true;
+        handshake.key.cancel();
+        established.add(handshake);
+    }
+
+    /**
+     * handshake 를 마친 연결을 blocking mode 로 바꿔 onEstablished 로 넘긴다.
+     * cancel 한 key 가 selector 에서 빠져야 blocking mode 로 바꿀 수 있으므로 selectNow 뒤에 한꺼번에 처리한다.
+     */
+    private void handOff() throws IOException {
+        if (established.isEmpty()) {
+            return;
+        }
+        selector.selectNow();
+        for (Handshake handshake : established) {
+            pending.decrementAndGet();
+            try {
+                handshake.channel.configureBlocking(true);
+                onEstablished.accept(new TlsSocket(handshake.channel, handshake.engine, handshake.netIn));
+            } catch (IOException e) {
+                log.info("TLS connection closed before handoff: {}", e.getMessage());
+                closeQuietly(handshake.channel);
+            }
+        }
+        established.clear();
+    }
+
+    private void fail(Handshake handshake, String reason) {
+        synchronized (handshake) {
+            if (handshake.finished) {
+                return;
+            }
+            handshake.finished = true;
+        }
+        log.info("TLS handshake failed with {}: {}", handshake.channel.socket().getInetAddress(), reason);
+        if (handshake.key != null) {
+            handshake.key.cancel();
+        }
+        closeQuietly(handshake.channel);
+        pending.decrementAndGet();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private static class Handshake {
+        private final SocketChannel channel;
+        private final SSLEngine engine;
+        private final long deadline;
+        private SelectionKey key;
+        private boolean finished;
+
+        // netIn 은 쓰기 모드, netOut 은 읽기 모드(보낼 byte)로 둔다.
+        private ByteBuffer netIn;
+        private ByteBuffer netOut;
+        private final ByteBuffer appIn;
+
+        Handshake(SocketChannel channel, SSLEngine engine, long deadline) {
+            this.channel = channel;
+            this.engine = engine;
+            this.deadline = deadline;
+            this.netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            this.netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            this.netOut.flip();
+            this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        }
+    }
+}
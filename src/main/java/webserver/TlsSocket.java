@@ -0,0 +1,278 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketImpl;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * TlsHandshaker 가 handshake 를 마친 SSLEngine 과 blocking SocketChannel 을 Socket 으로 감싼다.
+ * RequestHandler, Http2Connection 은 평문 Socket 과 똑같이 stream 으로 읽고 쓴다.
+ *
+ * SSLEngine 의 wrap, unwrap 은 동시에 호출할 수 있으므로 읽기와 쓰기는 서로 다른 lock 을 쓴다.
+ * (HTTP/2 는 한 thread 가 읽는 동안 다른 thread 가 응답을 쓴다.)
+ * SocketChannel 의 socket adaptor stream 은 JDK 11 에서 읽기와 쓰기가 같은 lock 을 잡으므로 쓰지 않는다.
+ */
+class TlsSocket extends Socket {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private final InputStream in = new TlsInputStream();
+    private final OutputStream out = new TlsOutputStream();
+
+    private final Object readLock = new Object();
+    private final Lock writeLock = new ReentrantLock();
+
+    // readLock 으로 보호된다. netIn 은 쓰기 모드, appIn 은 읽기 모드로 둔다.
+    private ByteBuffer netIn;
+    private ByteBuffer appIn;
+
+    // writeLock 으로 보호된다.
+    private ByteBuffer netOut;
+
+    private volatile boolean closed;
+
+    /**
+     * @param netIn는
+     *            handshake 중에 읽었지만 아직 unwrap 하지 않은 byte (쓰기 모드)
+     */
+    TlsSocket(SocketChannel channel, SSLEngine engine, ByteBuffer netIn) throws SocketException {
+        super((SocketImpl) null);
+        this.channel = channel;
+        this.engine = engine;
+        this.netIn = netIn;
+        this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        this.appIn.flip();
+        this.netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return channel.socket().getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return channel.socket().getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        channel.shutdownInput();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // close_notify 를 보낸다. 다른 thread 가 쓰다가 막혀 있으면 (shutdown 시 강제 종료) 보내지 않고 닫는다.
+        try {
+            if (writeLock.tryLock()) {
+                try {
+                    engine.closeOutbound();
+                    while (!engine.isOutboundDone()) {
+                        wrapAndWrite(EMPTY);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            // 상대방이 이미 연결을 끊었으면 close_notify 를 보내지 못해도 된다.
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TlsSocket[" + channel + "]";
+    }
+
+    /**
+     * appIn 이 비어 있을 때 호출한다.
+     * @return 읽은 application data 가 있으면 true, 연결이 끝났으면 false
+     */
+    private boolean fill() throws IOException {
+        appIn.clear();
+        try {
+            while (appIn.position() == 0) {
+                netIn.flip();
+                SSLEngineResult result = engine.unwrap(netIn, appIn);
+                netIn.compact();
+                runHandshake(result.getHandshakeStatus());
+
+                switch (result.getStatus()) {
+                    case BUFFER_UNDERFLOW:
+                        netIn = ensureCapacity(netIn, engine.getSession().getPacketBufferSize());
+                        if (channel.read(netIn) < 0) {
+                            return false;
+                        }
+                        break;
+                    case BUFFER_OVERFLOW:
+                        appIn = ensureCapacity(appIn, engine.getSession().getApplicationBufferSize());
+                        break;
+                    case CLOSED:
+                        return appIn.position() > 0;
+                    default:
+                        break;
+                }
+            }
+            return true;
+        } finally {
+            appIn.flip();
+        }
+    }
+
+    /**
+     * 연결 중에 오는 handshake 메시지(KeyUpdate 등)를 처리한다.
+     */
+    private void runHandshake(SSLEngineResult.HandshakeStatus status) throws IOException {
+        if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+            status = engine.getHandshakeStatus();
+        }
+        if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+            // BUFFER_OVERFLOW 이면 wrapAndWrite 가 netOut 만 키우고 돌아오므로 보낼 것이 없어질 때까지 반복한다.
+            writeLock.lock();
+            try {
+                do {
+                    wrapAndWrite(EMPTY);
+                } while (engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    // writeLock 안에서 호출한다.
+    private void wrapAndWrite(ByteBuffer src) throws IOException {
+        netOut.clear();
+        SSLEngineResult result = engine.wrap(src, netOut);
+        if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+            netOut = ByteBuffer.allocate(netOut.capacity() * 2);
+            return;
+        }
+        if (result.getStatus() == SSLEngineResult.Status.CLOSED && src.hasRemaining()) {
+            throw new SSLException("TLS connection closed");
+        }
+
+        netOut.flip();
+        while (netOut.hasRemaining()) {
+            channel.write(netOut);
+        }
+        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if (buffer.remaining() >= required) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(buffer.position() + required);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private class TlsInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (readLock) {
+                if (!appIn.hasRemaining() && !fill()) {
+                    return -1;
+                }
+                int n = Math.min(len, appIn.remaining());
+                appIn.get(b, off, n);
+                return n;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (readLock) {
+                return appIn.remaining();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsSocket.this.close();
+        }
+    }
+
+    private class TlsOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer src = ByteBuffer.wrap(b, off, len);
+            writeLock.lock();
+            try {
+                while (src.hasRemaining()) {
+                    wrapAndWrite(src);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsSocket.this.close();
+        }
+    }
+}
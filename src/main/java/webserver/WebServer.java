@@ -1,14 +1,47 @@
 package webserver;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.qos.logback.classic.LoggerContext;
+
 public class WebServer {
     private static final Logger log = LoggerFactory.getLogger(WebServer.class);
     private static final int DEFAULT_PORT = 8080;
+    static final boolean HTTP2_ENABLED = Boolean.getBoolean("webserver.http2");
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = Long.getLong("webserver.shutdownTimeoutMillis", 10_000);
+    private static final int ACCEPT_POLL_MILLIS = 500;
+    private static final int DRAIN_POLL_MILLIS = 20;
+    private static final long DRAIN_BUDGET_MILLIS = Long.getLong("webserver.drainBudgetMillis", 300);
+    private static final int HANDSHAKE_THREADS = Integer.getInteger("webserver.handshakeThreads",
+            Runtime.getRuntime().availableProcessors());
+    private static final int HANDSHAKE_QUEUE_SIZE = Integer.getInteger("webserver.handshakeQueueSize", 1024);
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = Integer.getInteger("webserver.handshakeTimeoutMillis", 10_000);
+
+    private static final Set<RequestHandler> activeHandlers = ConcurrentHashMap.newKeySet();
+    private static TlsHandshaker tlsHandshaker;
+    private static final CountDownLatch acceptLoopExited = new CountDownLatch(1);
+    private static volatile boolean running = true;
 
     public static void main(String args[]) throws Exception {
         int port = 0;
@@ -19,16 +52,157 @@ public class WebServer {
         }
 
         // 서버소켓을 생성한다. 웹서버는 기본적으로 8080번 포트를 사용한다.
+        // webserver.keyStore 가 지정되면 HTTPS 로 동작한다.
+        SSLContext sslContext = createSslContext();
+        ServerSocket listenSocket = createServerSocket(port, sslContext != null);
+        if (sslContext != null) {
+            // ALPN 으로 h2 를 먼저 제안한다.
+            String[] applicationProtocols = HTTP2_ENABLED ? new String[] {"h2", "http/1.1"} : null;
+            tlsHandshaker = new TlsHandshaker(sslContext, applicationProtocols, HANDSHAKE_THREADS,
+                    HANDSHAKE_QUEUE_SIZE, HANDSHAKE_TIMEOUT_MILLIS, WebServer::startRequestHandler);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(WebServer::shutdown, "shutdown"));
+        log.info("Web Application Server started {} port.", port);
+
+        // 클라이언트가 연결될때까지 대기한다. shutdown 여부를 확인하기 위해 주기적으로 깨어난다.
+        listenSocket.setSoTimeout(ACCEPT_POLL_MILLIS);
+        try {
+            while (running) {
+                try {
+                    dispatch(listenSocket.accept());
+                } catch (SocketTimeoutException e) {
+                    // running 을 다시 확인한다.
+                }
+            }
+            drainBacklog(listenSocket);
+        } finally {
+            listenSocket.close();
+            acceptLoopExited.countDown();
+        }
+    }
+
+    private static void dispatch(Socket connection) {
+        if (tlsHandshaker != null) {
+            tlsHandshaker.submit(connection);
+        } else {
+            startRequestHandler(connection);
+        }
+    }
+
+    /**
+     * 서버소켓을 닫기 전에 accept backlog 에 이미 들어와 있는 연결을 마저 받는다.
+     * 그냥 닫으면 Linux 는 backlog 에 남은 연결을 reset 하므로, SO_REUSEPORT 로 재시작할 때 연결이 실패한다.
+     * 연결이 계속 들어와도 DRAIN_BUDGET_MILLIS 가 지나면 멈춰서, 남은 shutdown 시간은 처리 중인 요청을 기다리는 데 쓴다.
+     */
+    private static void drainBacklog(ServerSocket listenSocket) throws IOException {
+        long drainDeadline = System.currentTimeMillis() + Math.min(DRAIN_BUDGET_MILLIS, SHUTDOWN_TIMEOUT_MILLIS / 2);
+        try {
+            long remaining;
+            while ((remaining = drainDeadline - System.currentTimeMillis()) > 0) {
+                listenSocket.setSoTimeout((int) Math.min(DRAIN_POLL_MILLIS, remaining));
+                dispatch(listenSocket.accept());
+            }
+        } catch (SocketTimeoutException e) {
+            // backlog 가 비었다.
+        }
+    }
+
+    private static void startRequestHandler(Socket connection) {
+        RequestHandler requestHandler = new RequestHandler(connection, activeHandlers::remove);
+        activeHandlers.add(requestHandler);
+        requestHandler.start();
+    }
 
-        try (ServerSocket listenSocket = new ServerSocket(port)) {
-            log.info("Web Application Server started {} port.", port);
+    private static SSLContext createSslContext() throws Exception {
+        String keyStore = System.getProperty("webserver.keyStore");
+        if (keyStore == null) {
+            return null;
+        }
+
+        String password = System.getProperty("webserver.keyStorePassword", "");
+        return SslContextFactory.create(Paths.get(keyStore), password.toCharArray());
+    }
+
+    /**
+     * webserver.reusePort=true 이면 SO_REUSEPORT를 켜서 새 프로세스가 기존 프로세스가 종료되기 전에
+     * 같은 포트를 bind 할 수 있게 한다. (무중단 재시작)
+     *
+     * HTTPS 는 TlsHandshaker 가 handshake 를 non-blocking 으로 진행하도록 SocketChannel 을 돌려주는
+     * ServerSocketChannel 의 socket 을 쓴다.
+     */
+    private static ServerSocket createServerSocket(int port, boolean tls) throws IOException {
+        ServerSocket listenSocket = tls ? ServerSocketChannel.open().socket() : new ServerSocket();
+        listenSocket.setReuseAddress(true);
+        if (Boolean.getBoolean("webserver.reusePort")) {
+            if (!setOption(listenSocket, StandardSocketOptions.SO_REUSEPORT, true)) {
+                log.warn("SO_REUSEPORT is not supported on this platform.");
+            }
+        }
+        listenSocket.bind(new InetSocketAddress(port));
+        return listenSocket;
+    }
 
-            // 클라이언트가 연결될때까지 대기한다.
-            Socket connection;
-            while ((connection = listenSocket.accept()) != null) {
-                RequestHandler requestHandler = new RequestHandler(connection);
-                requestHandler.start();
+    private static <T> boolean setOption(ServerSocket listenSocket, SocketOption<T> option, T value)
+            throws IOException {
+        NetworkChannel channel = listenSocket.getChannel();
+        if (channel != null) {
+            if (!channel.supportedOptions().contains(option)) {
+                return false;
             }
+            channel.setOption(option, value);
+            return true;
+        }
+        if (!listenSocket.supportedOptions().contains(option)) {
+            return false;
         }
+        listenSocket.setOption(option, value);
+        return true;
+    }
+
+    /**
+     * 새 연결을 더 받지 않고, 처리 중인 요청은 SHUTDOWN_TIMEOUT_MILLIS 안에서 끝날 때까지 기다린다.
+     * 시간 안에 끝나지 않은 연결은 닫고, 마지막으로 남은 로그를 flush 한다.
+     */
+    private static void shutdown() {
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        running = false;
+        try {
+            // accept loop 가 backlog 를 비우고 서버소켓을 닫을 때까지 기다린다.
+            acceptLoopExited.await(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 진행 중인 TLS handshake 가 끝나 handler 가 추가될 때까지 기다린다.
+        if (tlsHandshaker != null) {
+            tlsHandshaker.shutdown(deadline);
+        }
+
+        // 더 이상 새 handler 가 추가되지 않는 시점의 snapshot
+        List<RequestHandler> handlers = new ArrayList<>(activeHandlers);
+        log.info("Shutting down. Waiting for {} in-flight connections.", handlers.size());
+
+        handlers.forEach(RequestHandler::shutdown);
+        for (RequestHandler handler : handlers) {
+            long remaining = deadline - System.currentTimeMillis();
+            try {
+                if (remaining > 0) {
+                    handler.join(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        handlers.stream()
+                .filter(RequestHandler::isAlive)
+                .forEach(handler -> {
+                    log.warn("Closing connection that did not finish in time: {}", handler.getName());
+                    handler.closeConnection();
+                });
+
+        log.info("Web Application Server stopped.");
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
     }
 }
@@ -0,0 +1,34 @@
+package webserver.http2;
+
+import java.nio.charset.StandardCharsets;
+
+class HeaderField {
+    // RFC 7541 4.1 : 각 entry 의 크기는 name, value 의 길이에 32를 더한 값이다.
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private final String name;
+    private final String value;
+
+    HeaderField(String name, String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    int size() {
+        return name.getBytes(StandardCharsets.ISO_8859_1).length
+                + value.getBytes(StandardCharsets.ISO_8859_1).length + ENTRY_OVERHEAD;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + value;
+    }
+}
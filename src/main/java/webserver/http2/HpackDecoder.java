@@ -0,0 +1,116 @@
+package webserver.http2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 하나의 connection 에서 받은 header block 들을 순서대로 디코딩한다. (RFC 7541)
+ * dynamic table 상태를 공유하므로 header block 은 받은 순서대로 넘겨야 한다.
+ */
+class HpackDecoder {
+    private final HpackTable table;
+    private final int maxTableSize;
+    private final int maxHeaderListSize;
+
+    private byte[] block;
+    private int position;
+
+    HpackDecoder(int maxTableSize, int maxHeaderListSize) {
+        this.table = new HpackTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    List<HeaderField> decode(byte[] block) throws Http2Exception {
+        this.block = block;
+        this.position = 0;
+
+        List<HeaderField> headers = new ArrayList<>();
+        int headerListSize = 0;
+        while (position < block.length) {
+            int b = block[position] & 0xff;
+            HeaderField field;
+            if ((b & 0x80) != 0) {
+                // 1xxxxxxx : Indexed Header Field
+                field = table.get(readInteger(7));
+            } else if ((b & 0x40) != 0) {
+                // 01xxxxxx : Literal Header Field with Incremental Indexing
+                field = readLiteral(6);
+                table.add(field);
+            } else if ((b & 0x20) != 0) {
+                // 001xxxxx : Dynamic Table Size Update 는 header 보다 앞에만 올 수 있다.
+                if (!headers.isEmpty()) {
+                    throw Http2Exception.compression("Dynamic table size update after header field");
+                }
+                int size = readInteger(5);
+                if (size > maxTableSize) {
+                    throw Http2Exception.compression("Dynamic table size update exceeds limit: " + size);
+                }
+                table.setMaxSize(size);
+                continue;
+            } else {
+                // 0000xxxx : without Indexing, 0001xxxx : Never Indexed
+                field = readLiteral(4);
+            }
+
+            headerListSize += field.size();
+            if (headerListSize > maxHeaderListSize) {
+                throw Http2Exception.protocol("Header list too large");
+            }
+            headers.add(field);
+        }
+        return headers;
+    }
+
+    private HeaderField readLiteral(int prefixBits) throws Http2Exception {
+        int nameIndex = readInteger(prefixBits);
+        String name = nameIndex == 0 ? readString() : table.get(nameIndex).getName();
+        String value = readString();
+        return new HeaderField(name, value);
+    }
+
+    private String readString() throws Http2Exception {
+        if (position >= block.length) {
+            throw Http2Exception.compression("Truncated header block");
+        }
+        boolean huffman = (block[position] & 0x80) != 0;
+        int length = readInteger(7);
+        if (length > block.length - position) {
+            throw Http2Exception.compression("Truncated header block");
+        }
+
+        byte[] octets;
+        if (huffman) {
+            octets = Huffman.decode(block, position, length);
+        } else {
+            octets = new byte[length];
+            System.arraycopy(block, position, octets, 0, length);
+        }
+        position += length;
+        return new String(octets, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * RFC 7541 5.1 : N 비트 prefix 정수
+     */
+    private int readInteger(int prefixBits) throws Http2Exception {
+        int maxPrefix = (1 << prefixBits) - 1;
+        int value = block[position++] & maxPrefix;
+        if (value < maxPrefix) {
+            return value;
+        }
+
+        int shift = 0;
+        int b;
+        do {
+            if (position >= block.length || shift > 21) {
+                throw Http2Exception.compression("Invalid integer encoding");
+            }
+            b = block[position++] & 0xff;
+            value += (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
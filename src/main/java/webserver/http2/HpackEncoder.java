@@ -0,0 +1,120 @@
+package webserver.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * 응답 header 를 HPACK 으로 인코딩한다.
+ * 자주 반복되는 header 는 dynamic table 에 넣어 다음 응답부터 index 하나로 보내고,
+ * 문자열은 Huffman 으로 인코딩한 쪽이 짧을 때만 Huffman 을 쓴다.
+ */
+class HpackEncoder {
+    private static final int DEFAULT_MAX_TABLE_SIZE = 4096;
+
+    // 응답마다 값이 바뀌거나 민감한 header 는 dynamic table 에 넣지 않는다.
+    private static final Set<String> NOT_INDEXED = ImmutableSet.of("content-length", "location", "date", "etag");
+    private static final Set<String> NEVER_INDEXED = ImmutableSet.of("set-cookie", "authorization");
+
+    private final HpackTable table = new HpackTable(DEFAULT_MAX_TABLE_SIZE);
+    // header block 사이에 바뀐 table size 중 가장 작은 값과 마지막 값. 바뀌지 않았으면 -1
+    private int smallestPendingTableSize = -1;
+    private int pendingMaxTableSize = -1;
+
+    /**
+     * 상대방이 SETTINGS_HEADER_TABLE_SIZE 를 보내면 호출한다. 다음 header block 맨 앞에 size update 를 넣는다.
+     */
+    void setMaxTableSize(int peerMaxTableSize) {
+        pendingMaxTableSize = Math.min(peerMaxTableSize, DEFAULT_MAX_TABLE_SIZE);
+        smallestPendingTableSize = smallestPendingTableSize < 0
+                ? pendingMaxTableSize
+                : Math.min(smallestPendingTableSize, pendingMaxTableSize);
+    }
+
+    byte[] encode(List<HeaderField> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (pendingMaxTableSize >= 0) {
+            // size 가 여러 번 바뀌었으면 가장 작은 값을 먼저 알려 그 크기로 줄어들며 지워진 entry 를 상대방도 지우게 한다.
+            // 그 다음 마지막 값을 알린다. (RFC 7541 4.2)
+            if (smallestPendingTableSize < pendingMaxTableSize) {
+                writeTableSizeUpdate(out, smallestPendingTableSize);
+            }
+            writeTableSizeUpdate(out, pendingMaxTableSize);
+            smallestPendingTableSize = -1;
+            pendingMaxTableSize = -1;
+        }
+
+        for (HeaderField field : headers) {
+            encode(out, field);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeTableSizeUpdate(ByteArrayOutputStream out, int maxTableSize) {
+        table.setMaxSize(maxTableSize);
+        writeInteger(out, 0x20, 5, maxTableSize);
+    }
+
+    private void encode(ByteArrayOutputStream out, HeaderField field) {
+        String name = field.getName();
+        if (NEVER_INDEXED.contains(name)) {
+            writeLiteral(out, 0x10, 4, field);
+            return;
+        }
+        if (NOT_INDEXED.contains(name)) {
+            writeLiteral(out, 0x00, 4, field);
+            return;
+        }
+
+        int index = table.indexOf(name, field.getValue());
+        if (index > 0) {
+            writeInteger(out, 0x80, 7, index);
+            return;
+        }
+        writeLiteral(out, 0x40, 6, field);
+        table.add(field);
+    }
+
+    private void writeLiteral(ByteArrayOutputStream out, int pattern, int prefixBits, HeaderField field) {
+        int nameIndex = table.indexOfName(field.getName());
+        writeInteger(out, pattern, prefixBits, nameIndex);
+        if (nameIndex == 0) {
+            writeString(out, field.getName());
+        }
+        writeString(out, field.getValue());
+    }
+
+    private void writeString(ByteArrayOutputStream out, String value) {
+        byte[] octets = value.getBytes(StandardCharsets.ISO_8859_1);
+        int huffmanLength = Huffman.encodedLength(octets);
+        if (huffmanLength < octets.length) {
+            writeInteger(out, 0x80, 7, huffmanLength);
+            Huffman.encode(octets, out);
+        } else {
+            writeInteger(out, 0x00, 7, octets.length);
+            out.write(octets, 0, octets.length);
+        }
+    }
+
+    /**
+     * RFC 7541 5.1 : N 비트 prefix 정수
+     */
+    private void writeInteger(ByteArrayOutputStream out, int pattern, int prefixBits, int value) {
+        int maxPrefix = (1 << prefixBits) - 1;
+        if (value < maxPrefix) {
+            out.write(pattern | value);
+            return;
+        }
+
+        out.write(pattern | maxPrefix);
+        value -= maxPrefix;
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
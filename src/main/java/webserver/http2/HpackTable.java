@@ -0,0 +1,154 @@
+package webserver.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HPACK static table (RFC 7541 Appendix A) 과 dynamic table.
+ * index 1~61 은 static table, 62 부터는 가장 최근에 추가된 dynamic table entry 부터 차례로 가리킨다.
+ */
+class HpackTable {
+    static final HeaderField[] STATIC_TABLE = {
+            new HeaderField(":authority", ""),
+            new HeaderField(":method", "GET"),
+            new HeaderField(":method", "POST"),
+            new HeaderField(":path", "/"),
+            new HeaderField(":path", "/index.html"),
+            new HeaderField(":scheme", "http"),
+            new HeaderField(":scheme", "https"),
+            new HeaderField(":status", "200"),
+            new HeaderField(":status", "204"),
+            new HeaderField(":status", "206"),
+            new HeaderField(":status", "304"),
+            new HeaderField(":status", "400"),
+            new HeaderField(":status", "404"),
+            new HeaderField(":status", "500"),
+            new HeaderField("accept-charset", ""),
+            new HeaderField("accept-encoding", "gzip, deflate"),
+            new HeaderField("accept-language", ""),
+            new HeaderField("accept-ranges", ""),
+            new HeaderField("accept", ""),
+            new HeaderField("access-control-allow-origin", ""),
+            new HeaderField("age", ""),
+            new HeaderField("allow", ""),
+            new HeaderField("authorization", ""),
+            new HeaderField("cache-control", ""),
+            new HeaderField("content-disposition", ""),
+            new HeaderField("content-encoding", ""),
+            new HeaderField("content-language", ""),
+            new HeaderField("content-length", ""),
+            new HeaderField("content-location", ""),
+            new HeaderField("content-range", ""),
+            new HeaderField("content-type", ""),
+            new HeaderField("cookie", ""),
+            new HeaderField("date", ""),
+            new HeaderField("etag", ""),
+            new HeaderField("expect", ""),
+            new HeaderField("expires", ""),
+            new HeaderField("from", ""),
+            new HeaderField("host", ""),
+            new HeaderField("if-match", ""),
+            new HeaderField("if-modified-since", ""),
+            new HeaderField("if-none-match", ""),
+            new HeaderField("if-range", ""),
+            new HeaderField("if-unmodified-since", ""),
+            new HeaderField("last-modified", ""),
+            new HeaderField("link", ""),
+            new HeaderField("location", ""),
+            new HeaderField("max-forwards", ""),
+            new HeaderField("proxy-authenticate", ""),
+            new HeaderField("proxy-authorization", ""),
+            new HeaderField("range", ""),
+            new HeaderField("referer", ""),
+            new HeaderField("refresh", ""),
+            new HeaderField("retry-after", ""),
+            new HeaderField("server", ""),
+            new HeaderField("set-cookie", ""),
+            new HeaderField("strict-transport-security", ""),
+            new HeaderField("transfer-encoding", ""),
+            new HeaderField("user-agent", ""),
+            new HeaderField("vary", ""),
+            new HeaderField("via", ""),
+            new HeaderField("www-authenticate", "")
+    };
+
+    // 가장 오래된 entry 가 앞에, 가장 최근 entry 가 뒤에 있다.
+    private final List<HeaderField> dynamicTable = new ArrayList<>();
+    private int size;
+    private int maxSize;
+
+    HpackTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    HeaderField get(int index) throws Http2Exception {
+        if (index <= 0) {
+            throw Http2Exception.compression("Invalid header index " + index);
+        }
+        if (index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1];
+        }
+
+        int dynamicIndex = index - STATIC_TABLE.length - 1;
+        if (dynamicIndex >= dynamicTable.size()) {
+            throw Http2Exception.compression("Invalid header index " + index);
+        }
+        return dynamicTable.get(dynamicTable.size() - 1 - dynamicIndex);
+    }
+
+    /**
+     * @return name 과 value 가 모두 일치하는 index, 없으면 0
+     */
+    int indexOf(String name, String value) {
+        for (int i = 0; i < STATIC_TABLE.length; i++) {
+            if (STATIC_TABLE[i].getName().equals(name) && STATIC_TABLE[i].getValue().equals(value)) {
+                return i + 1;
+            }
+        }
+        for (int i = dynamicTable.size() - 1; i >= 0; i--) {
+            HeaderField field = dynamicTable.get(i);
+            if (field.getName().equals(name) && field.getValue().equals(value)) {
+                return STATIC_TABLE.length + dynamicTable.size() - i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return name 이 일치하는 index, 없으면 0
+     */
+    int indexOfName(String name) {
+        for (int i = 0; i < STATIC_TABLE.length; i++) {
+            if (STATIC_TABLE[i].getName().equals(name)) {
+                return i + 1;
+            }
+        }
+        for (int i = dynamicTable.size() - 1; i >= 0; i--) {
+            if (dynamicTable.get(i).getName().equals(name)) {
+                return STATIC_TABLE.length + dynamicTable.size() - i;
+            }
+        }
+        return 0;
+    }
+
+    void add(HeaderField field) {
+        int fieldSize = field.size();
+        // entry 가 table 보다 크면 table 을 비우기만 한다. (RFC 7541 4.4)
+        evict(maxSize - fieldSize);
+        if (fieldSize <= maxSize) {
+            dynamicTable.add(field);
+            size += fieldSize;
+        }
+    }
+
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    private void evict(int targetSize) {
+        while (size > Math.max(targetSize, 0) && !dynamicTable.isEmpty()) {
+            size -= dynamicTable.remove(0).size();
+        }
+    }
+}
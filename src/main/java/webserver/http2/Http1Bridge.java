@@ -0,0 +1,178 @@
+package webserver.http2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableSet;
+
+import model.HttpRequest;
+
+/**
+ * HTTP/2 stream 을 기존 RequestHandler 의 HTTP/1.1 처리 흐름에 연결한다.
+ * 요청 header 는 HTTP/1.1 요청 메시지로, handler 가 쓴 HTTP/1.1 응답 메시지는 HTTP/2 header 와 body 로 바꾼다.
+ */
+class Http1Bridge {
+    private static final String CRLF = "\r\n";
+
+    // HTTP/2 에서 쓸 수 없는 connection-specific header (RFC 7540 8.1.2.2)
+    private static final Set<String> CONNECTION_HEADERS = ImmutableSet.of("connection", "keep-alive",
+            "proxy-connection", "transfer-encoding", "upgrade");
+
+    private Http1Bridge() {}
+
+    static HttpRequest toHttpRequest(int streamId, List<HeaderField> headers, byte[] body) throws IOException {
+        String method = null;
+        String path = null;
+        String authority = null;
+        List<String> cookies = new ArrayList<>();
+        StringBuilder message = new StringBuilder();
+
+        for (HeaderField field : headers) {
+            validate(streamId, field);
+            String name = field.getName();
+            if (name.equals(":method")) {
+                method = field.getValue();
+            } else if (name.equals(":path")) {
+                path = field.getValue();
+            } else if (name.equals(":authority")) {
+                authority = field.getValue();
+            } else if (name.equals("cookie")) {
+                // HTTP/2 에서는 cookie 가 여러 header 로 나뉘어 올 수 있다. (RFC 7540 8.1.2.5)
+                cookies.add(field.getValue());
+            } else if (name.equals("host")) {
+                authority = authority == null ? field.getValue() : authority;
+            } else if (!name.startsWith(":") && !name.equals("content-length") && !CONNECTION_HEADERS.contains(name)) {
+                appendHeader(message, canonicalName(name), field.getValue());
+            }
+        }
+
+        if (method == null || path == null || path.isEmpty()) {
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Missing :method or :path");
+        }
+        if (method.indexOf(' ') >= 0 || path.indexOf(' ') >= 0) {
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Space in :method or :path");
+        }
+        if (authority != null) {
+            appendHeader(message, "Host", authority);
+        }
+        if (!cookies.isEmpty()) {
+            appendHeader(message, "Cookie", String.join("; ", cookies));
+        }
+        if (body.length > 0) {
+            appendHeader(message, "Content-Length", String.valueOf(body.length));
+        }
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        request.write((method + " " + path + " HTTP/2.0" + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+        request.write(message.append(CRLF).toString().getBytes(StandardCharsets.ISO_8859_1));
+        request.write(body);
+        return new HttpRequest(new ByteArrayInputStream(request.toByteArray()));
+    }
+
+    /**
+     * HPACK 으로 받은 name, value 를 그대로 HTTP/1.1 메시지에 붙이므로, 다른 header 나 요청 줄을 끼워 넣을 수 있는
+     * field 는 malformed 로 거부한다. (RFC 7540 8.1.2, 10.3)
+     * - name 은 소문자여야 하고, ':' 는 pseudo-header 의 첫 글자로만 올 수 있다.
+     * - name 과 value 에 CR, LF, NUL 이 있으면 안 된다. name 에는 공백, 제어 문자도 올 수 없다.
+     */
+    private static void validate(int streamId, HeaderField field) throws Http2Exception {
+        String name = field.getName();
+        if (name.isEmpty()) {
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Empty header name");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || c <= ' ' || c >= 0x7f || (c == ':' && i > 0)) {
+                throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Invalid header name");
+            }
+        }
+
+        String value = field.getValue();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == '\0') {
+                throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Invalid header value: " + name);
+            }
+        }
+    }
+
+    private static void appendHeader(StringBuilder message, String name, String value) {
+        message.append(name).append(": ").append(value).append(CRLF);
+    }
+
+    /**
+     * content-type -> Content-Type
+     */
+    private static String canonicalName(String name) {
+        return Arrays.stream(name.split("-"))
+                .map(part -> part.isEmpty() ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1))
+                .collect(Collectors.joining("-"));
+    }
+
+    static Http1Response parseResponse(byte[] message) throws IOException {
+        int headerEnd = indexOf(message, (CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+        int bodyStart = headerEnd < 0 ? message.length : headerEnd + 4;
+        String head = new String(message, 0, headerEnd < 0 ? message.length : headerEnd, StandardCharsets.ISO_8859_1);
+
+        String[] lines = head.split(CRLF);
+        String[] statusLine = lines[0].trim().split(" ");
+        if (statusLine.length < 2) {
+            throw new IOException("Invalid response status line: " + lines[0]);
+        }
+
+        List<HeaderField> headers = new ArrayList<>();
+        headers.add(new HeaderField(":status", statusLine[1]));
+        for (int i = 1; i < lines.length; i++) {
+            String[] parts = lines[i].split(":", 2);
+            if (parts.length != 2) {
+                continue;
+            }
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!CONNECTION_HEADERS.contains(name)) {
+                headers.add(new HeaderField(name, parts[1].trim()));
+            }
+        }
+
+        byte[] body = Arrays.copyOfRange(message, bodyStart, message.length);
+        return new Http1Response(headers, body);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    static class Http1Response {
+        private final List<HeaderField> headers;
+        private final byte[] body;
+
+        Http1Response(List<HeaderField> headers, byte[] body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        List<HeaderField> getHeaders() {
+            return headers;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+}
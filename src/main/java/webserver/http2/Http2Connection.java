@@ -0,0 +1,612 @@
+package webserver.http2;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import model.HttpRequest;
+import webserver.http2.Http1Bridge.Http1Response;
+
+/**
+ * HTTP/2 connection 하나를 처리한다. (RFC 7540)
+ * 이 객체를 만든 thread 가 frame 을 읽고, 각 stream 은 별도 thread 에서 RequestDispatcher 로 처리된다.
+ * frame 쓰기는 writeLock, 송신 flow control window 는 flowLock 으로 보호한다.
+ */
+public class Http2Connection {
+    private static final Logger log = LoggerFactory.getLogger(Http2Connection.class);
+
+    public static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    private static final int DEFAULT_WINDOW_SIZE = 65_535;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16_384;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int MAX_FRAME_SIZE_LIMIT = 16_777_215;
+
+    private static final int HEADER_TABLE_SIZE = 4096;
+    private static final int MAX_CONCURRENT_STREAMS = 100;
+    private static final int MAX_HEADER_LIST_SIZE = 64 * 1024;
+    private static final int MAX_REQUEST_BODY_SIZE = 1024 * 1024;
+    private static final long STREAM_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // client 가 보내는 RST_STREAM 이 이 시간 안에 이만큼을 넘으면 rapid reset 공격(CVE-2023-44487)으로 보고 connection 을 닫는다.
+    private static final int MAX_RESETS_PER_WINDOW = 200;
+    private static final long RESET_WINDOW_MILLIS = 30_000;
+
+    public interface RequestDispatcher {
+        void dispatch(HttpRequest request, OutputStream out) throws IOException;
+    }
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final RequestDispatcher dispatcher;
+
+    private final HpackDecoder decoder = new HpackDecoder(HEADER_TABLE_SIZE, MAX_HEADER_LIST_SIZE);
+    private final HpackEncoder encoder = new HpackEncoder();
+    private final Map<Integer, Http2Stream> streams = new ConcurrentHashMap<>();
+    private final ExecutorService streamExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("h2-stream-%d").build());
+
+    private final Object writeLock = new Object();
+    private final Object flowLock = new Object();
+
+    // flowLock 으로 보호된다.
+    private int connectionSendWindow = DEFAULT_WINDOW_SIZE;
+    private int peerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+
+    private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private volatile int lastStreamId;
+    private volatile boolean goingAway;
+    private volatile boolean closed;
+
+    // reader thread 에서만 쓴다.
+    private long resetWindowStart;
+    private int resetCount;
+
+    public Http2Connection(Socket socket, InputStream in, OutputStream out, RequestDispatcher dispatcher) {
+        this.socket = socket;
+        this.in = new DataInputStream(in);
+        this.out = new BufferedOutputStream(out, DEFAULT_MAX_FRAME_SIZE + Http2Frame.HEADER_LENGTH);
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * client connection preface 를 확인한 뒤 connection 이 닫힐 때까지 frame 을 처리한다.
+     */
+    public void serve() throws IOException {
+        try {
+            readPreface();
+            writeSettings();
+            while (!closed) {
+                Http2Frame frame = Http2Frame.read(in, DEFAULT_MAX_FRAME_SIZE);
+                try {
+                    handleFrame(frame);
+                } catch (Http2Exception e) {
+                    if (!e.isStreamError()) {
+                        throw e;
+                    }
+                    log.info("Stream {} error: {}", e.getStreamId(), e.getMessage());
+                    resetStream(e.getStreamId(), e.getErrorCode());
+                }
+            }
+        } catch (Http2Exception e) {
+            log.info("HTTP/2 connection error: {}", e.getMessage());
+            writeGoAway(e.getErrorCode());
+        } catch (EOFException e) {
+            log.debug("HTTP/2 connection closed by peer");
+        } catch (IOException e) {
+            // GOAWAY 이후 connection 을 닫으면서 생긴 예외는 정상 종료로 본다.
+            if (!goingAway) {
+                throw e;
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 새 stream 을 더 받지 않도록 GOAWAY 를 보내고, 처리 중인 stream 이 끝나면 connection 을 닫는다.
+     */
+    public void shutdown() {
+        goingAway = true;
+        try {
+            writeGoAway(Http2Exception.NO_ERROR);
+        } catch (IOException e) {
+            log.debug(e.getMessage());
+        }
+        closeIfDrained();
+    }
+
+    private void readPreface() throws IOException {
+        byte[] preface = new byte[PREFACE.length];
+        in.readFully(preface);
+        if (!Arrays.equals(preface, PREFACE)) {
+            throw Http2Exception.protocol("Invalid connection preface");
+        }
+    }
+
+    private void writeSettings() throws IOException {
+        byte[] payload = new byte[18];
+        writeSetting(payload, 0, SETTINGS_HEADER_TABLE_SIZE, HEADER_TABLE_SIZE);
+        writeSetting(payload, 6, SETTINGS_MAX_CONCURRENT_STREAMS, MAX_CONCURRENT_STREAMS);
+        writeSetting(payload, 12, SETTINGS_MAX_HEADER_LIST_SIZE, MAX_HEADER_LIST_SIZE);
+        writeFrame(Http2Frame.SETTINGS, 0, 0, payload);
+    }
+
+    private void writeSetting(byte[] payload, int offset, int id, int value) {
+        payload[offset] = (byte) (id >>> 8);
+        payload[offset + 1] = (byte) id;
+        Http2Frame.writeInt(payload, offset + 2, value);
+    }
+
+    private void handleFrame(Http2Frame frame) throws IOException {
+        switch (frame.getType()) {
+            case Http2Frame.HEADERS:
+                handleHeaders(frame);
+                break;
+            case Http2Frame.DATA:
+                handleData(frame);
+                break;
+            case Http2Frame.SETTINGS:
+                handleSettings(frame);
+                break;
+            case Http2Frame.WINDOW_UPDATE:
+                handleWindowUpdate(frame);
+                break;
+            case Http2Frame.PING:
+                handlePing(frame);
+                break;
+            case Http2Frame.RST_STREAM:
+                handleRstStream(frame);
+                break;
+            case Http2Frame.GOAWAY:
+                goingAway = true;
+                closeIfDrained();
+                break;
+            case Http2Frame.PRIORITY:
+                if (frame.getStreamId() == 0) {
+                    throw Http2Exception.protocol("PRIORITY on stream 0");
+                }
+                break;
+            case Http2Frame.PUSH_PROMISE:
+            case Http2Frame.CONTINUATION:
+                throw Http2Exception.protocol("Unexpected frame type " + frame.getType());
+            default:
+                // 알 수 없는 frame type 은 무시한다. (RFC 7540 4.1)
+                break;
+        }
+    }
+
+    private void handleHeaders(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        if (streamId == 0) {
+            throw Http2Exception.protocol("HEADERS on stream 0");
+        }
+
+        int[] range = frame.contentRange();
+        byte[] block = readHeaderBlock(frame, range[0], range[1]);
+        // 거절할 stream 이더라도 HPACK 상태를 맞추기 위해 header block 은 항상 디코딩한다.
+        List<HeaderField> headers = decoder.decode(block);
+        boolean endStream = frame.hasFlag(Http2Frame.FLAG_END_STREAM);
+
+        Http2Stream stream = streams.get(streamId);
+        if (stream != null) {
+            // trailer
+            if (stream.isEndStreamReceived() || !endStream) {
+                throw Http2Exception.stream(Http2Exception.STREAM_CLOSED, streamId, "Unexpected HEADERS");
+            }
+            stream.setEndStreamReceived();
+            dispatch(stream);
+            return;
+        }
+
+        if (streamId % 2 == 0 || streamId <= lastStreamId) {
+            throw Http2Exception.protocol("Invalid stream id " + streamId);
+        }
+        lastStreamId = streamId;
+        if (goingAway || streams.size() >= MAX_CONCURRENT_STREAMS) {
+            throw Http2Exception.stream(Http2Exception.REFUSED_STREAM, streamId, "Stream refused");
+        }
+
+        synchronized (flowLock) {
+            stream = new Http2Stream(streamId, headers, peerInitialWindowSize);
+        }
+        streams.put(streamId, stream);
+        if (endStream) {
+            stream.setEndStreamReceived();
+            dispatch(stream);
+        }
+    }
+
+    /**
+     * END_HEADERS 가 올 때까지 같은 stream 의 CONTINUATION frame 을 이어 읽는다.
+     */
+    private byte[] readHeaderBlock(Http2Frame frame, int offset, int end) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        block.write(frame.getPayload(), offset, end - offset);
+
+        Http2Frame current = frame;
+        while (!current.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            current = Http2Frame.read(in, DEFAULT_MAX_FRAME_SIZE);
+            if (current.getType() != Http2Frame.CONTINUATION || current.getStreamId() != frame.getStreamId()) {
+                throw Http2Exception.protocol("Expected CONTINUATION");
+            }
+            block.write(current.getPayload(), 0, current.getPayload().length);
+            if (block.size() > MAX_HEADER_LIST_SIZE) {
+                throw Http2Exception.protocol("Header block too large");
+            }
+        }
+        return block.toByteArray();
+    }
+
+    private void handleData(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        if (streamId == 0) {
+            throw Http2Exception.protocol("DATA on stream 0");
+        }
+        if (streamId > lastStreamId) {
+            throw Http2Exception.protocol("DATA on idle stream " + streamId);
+        }
+
+        // 받은 만큼 바로 window 를 돌려준다. padding 도 flow control 대상이다.
+        int length = frame.getPayload().length;
+        if (length > 0) {
+            writeWindowUpdate(0, length);
+        }
+
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.isEndStreamReceived()) {
+            throw Http2Exception.stream(Http2Exception.STREAM_CLOSED, streamId, "DATA on closed stream");
+        }
+
+        int[] range = frame.contentRange();
+        if (stream.getBodySize() + range[1] - range[0] > MAX_REQUEST_BODY_SIZE) {
+            throw Http2Exception.stream(Http2Exception.CANCEL, streamId, "Request body too large");
+        }
+        stream.appendBody(frame.getPayload(), range[0], range[1] - range[0]);
+
+        if (frame.hasFlag(Http2Frame.FLAG_END_STREAM)) {
+            stream.setEndStreamReceived();
+            dispatch(stream);
+        } else if (length > 0) {
+            writeWindowUpdate(streamId, length);
+        }
+    }
+
+    private void handleSettings(Http2Frame frame) throws IOException {
+        if (frame.getStreamId() != 0) {
+            throw Http2Exception.protocol("SETTINGS on stream " + frame.getStreamId());
+        }
+        byte[] payload = frame.getPayload();
+        if (frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            if (payload.length != 0) {
+                throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "SETTINGS ACK with payload");
+            }
+            return;
+        }
+        if (payload.length % 6 != 0) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid SETTINGS length");
+        }
+
+        for (int offset = 0; offset < payload.length; offset += 6) {
+            int id = ((payload[offset] & 0xff) << 8) | (payload[offset + 1] & 0xff);
+            int value = Http2Frame.readInt(payload, offset + 2);
+            applySetting(id, value);
+        }
+        writeFrame(Http2Frame.SETTINGS, Http2Frame.FLAG_ACK, 0, new byte[0]);
+    }
+
+    private void applySetting(int id, int value) throws Http2Exception {
+        switch (id) {
+            case SETTINGS_HEADER_TABLE_SIZE:
+                synchronized (writeLock) {
+                    encoder.setMaxTableSize(value);
+                }
+                break;
+            case SETTINGS_INITIAL_WINDOW_SIZE:
+                if (value < 0) {
+                    throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "Invalid initial window size");
+                }
+                updateInitialWindowSize(value);
+                break;
+            case SETTINGS_MAX_FRAME_SIZE:
+                if (value < DEFAULT_MAX_FRAME_SIZE || value > MAX_FRAME_SIZE_LIMIT) {
+                    throw Http2Exception.protocol("Invalid max frame size " + value);
+                }
+                peerMaxFrameSize = value;
+                break;
+            default:
+                // ENABLE_PUSH 등 나머지 설정은 server push 를 쓰지 않으므로 무시한다.
+                break;
+        }
+    }
+
+    /**
+     * SETTINGS_INITIAL_WINDOW_SIZE 가 바뀌면 열려 있는 모든 stream 의 window 를 차이만큼 조정한다. (RFC 7540 6.9.2)
+     */
+    private void updateInitialWindowSize(int value) throws Http2Exception {
+        synchronized (flowLock) {
+            int delta = value - peerInitialWindowSize;
+            peerInitialWindowSize = value;
+            for (Http2Stream stream : streams.values()) {
+                long window = (long) stream.getSendWindow() + delta;
+                if (window > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "Window overflow");
+                }
+                stream.setSendWindow((int) window);
+            }
+            flowLock.notifyAll();
+        }
+    }
+
+    private void handleWindowUpdate(Http2Frame frame) throws Http2Exception {
+        if (frame.getPayload().length != 4) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE length");
+        }
+        int streamId = frame.getStreamId();
+        int increment = Http2Frame.readInt(frame.getPayload(), 0) & 0x7fffffff;
+        if (increment == 0) {
+            if (streamId == 0) {
+                throw Http2Exception.protocol("Zero window increment");
+            }
+            throw Http2Exception.stream(Http2Exception.PROTOCOL_ERROR, streamId, "Zero window increment");
+        }
+
+        synchronized (flowLock) {
+            if (streamId == 0) {
+                if ((long) connectionSendWindow + increment > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.connection(Http2Exception.FLOW_CONTROL_ERROR, "Window overflow");
+                }
+                connectionSendWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    return;
+                }
+                if ((long) stream.getSendWindow() + increment > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.stream(Http2Exception.FLOW_CONTROL_ERROR, streamId, "Window overflow");
+                }
+                stream.setSendWindow(stream.getSendWindow() + increment);
+            }
+            flowLock.notifyAll();
+        }
+    }
+
+    private void handlePing(Http2Frame frame) throws IOException {
+        if (frame.getStreamId() != 0) {
+            throw Http2Exception.protocol("PING on stream " + frame.getStreamId());
+        }
+        if (frame.getPayload().length != 8) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid PING length");
+        }
+        if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            writeFrame(Http2Frame.PING, Http2Frame.FLAG_ACK, 0, frame.getPayload());
+        }
+    }
+
+    private void handleRstStream(Http2Frame frame) throws Http2Exception {
+        int streamId = frame.getStreamId();
+        if (streamId == 0 || streamId > lastStreamId) {
+            throw Http2Exception.protocol("RST_STREAM on idle stream " + streamId);
+        }
+        if (frame.getPayload().length != 4) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Invalid RST_STREAM length");
+        }
+        countReset();
+
+        Http2Stream stream = streams.get(streamId);
+        if (stream != null && stream.isEndStreamReceived()) {
+            // 이미 처리 중인 stream 은 process() 가 끝날 때 map 에서 빠진다.
+            // 그 전까지 MAX_CONCURRENT_STREAMS 에 포함되어야 reset 을 반복해 worker thread 를 늘릴 수 없다.
+            synchronized (flowLock) {
+                stream.setReset();
+                flowLock.notifyAll();
+            }
+        } else {
+            removeStream(streamId);
+        }
+    }
+
+    private void countReset() throws Http2Exception {
+        long now = System.currentTimeMillis();
+        if (now - resetWindowStart > RESET_WINDOW_MILLIS) {
+            resetWindowStart = now;
+            resetCount = 0;
+        }
+        if (++resetCount > MAX_RESETS_PER_WINDOW) {
+            throw Http2Exception.connection(Http2Exception.ENHANCE_YOUR_CALM, "Too many RST_STREAM frames");
+        }
+    }
+
+    private void dispatch(Http2Stream stream) {
+        streamExecutor.execute(() -> process(stream));
+    }
+
+    private void process(Http2Stream stream) {
+        try {
+            HttpRequest request = Http1Bridge.toHttpRequest(stream.getId(), stream.getHeaders(), stream.getBody());
+            log.info("h2 stream {}: {} {}", stream.getId(), request.getMethod(), request.getUrl());
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            dispatcher.dispatch(request, response);
+            writeResponse(stream, Http1Bridge.parseResponse(response.toByteArray()));
+        } catch (Http2Exception e) {
+            resetQuietly(stream.getId(), e.getErrorCode());
+        } catch (IOException | RuntimeException e) {
+            // client 가 reset 한 stream 은 다시 reset 하지 않는다.
+            if (!stream.isReset()) {
+                log.error("Error while handling stream {}: {}", stream.getId(), e.getMessage());
+                resetQuietly(stream.getId(), Http2Exception.INTERNAL_ERROR);
+            }
+        } finally {
+            removeStream(stream.getId());
+        }
+    }
+
+    private void writeResponse(Http2Stream stream, Http1Response response) throws IOException {
+        byte[] body = response.getBody();
+        synchronized (writeLock) {
+            if (stream.isReset()) {
+                return;
+            }
+            // HPACK encoder 상태는 frame 을 보낸 순서와 같아야 하므로 인코딩과 쓰기를 같은 lock 안에서 한다.
+            byte[] block = encoder.encode(response.getHeaders());
+            int endStream = body.length == 0 ? Http2Frame.FLAG_END_STREAM : 0;
+            int maxFrameSize = peerMaxFrameSize;
+
+            int offset = 0;
+            int type = Http2Frame.HEADERS;
+            do {
+                int length = Math.min(block.length - offset, maxFrameSize);
+                boolean last = offset + length == block.length;
+                int flags = (last ? Http2Frame.FLAG_END_HEADERS : 0) | (type == Http2Frame.HEADERS ? endStream : 0);
+                Http2Frame.write(out, type, flags, stream.getId(), block, offset, length);
+                offset += length;
+                type = Http2Frame.CONTINUATION;
+            } while (offset < block.length);
+            out.flush();
+        }
+
+        int offset = 0;
+        while (offset < body.length) {
+            int length = acquireSendWindow(stream, Math.min(body.length - offset, peerMaxFrameSize));
+            boolean last = offset + length == body.length;
+            synchronized (writeLock) {
+                Http2Frame.write(out, Http2Frame.DATA, last ? Http2Frame.FLAG_END_STREAM : 0, stream.getId(),
+                        body, offset, length);
+                out.flush();
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * connection 과 stream 의 송신 window 가 모두 남아 있을 때까지 기다린 뒤 보낼 수 있는 만큼의 크기를 돌려준다.
+     */
+    private int acquireSendWindow(Http2Stream stream, int requested) throws IOException {
+        synchronized (flowLock) {
+            while (!closed && !stream.isReset() && (connectionSendWindow <= 0 || stream.getSendWindow() <= 0)) {
+                try {
+                    flowLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for flow control window");
+                }
+            }
+            if (closed || stream.isReset()) {
+                throw new IOException("Stream " + stream.getId() + " closed");
+            }
+
+            int length = Math.min(requested, Math.min(connectionSendWindow, stream.getSendWindow()));
+            connectionSendWindow -= length;
+            stream.setSendWindow(stream.getSendWindow() - length);
+            return length;
+        }
+    }
+
+    private void removeStream(int streamId) {
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            synchronized (flowLock) {
+                stream.setReset();
+                flowLock.notifyAll();
+            }
+        }
+        closeIfDrained();
+    }
+
+    private void closeIfDrained() {
+        if (goingAway && streams.isEmpty() && !closed) {
+            try {
+                // reader thread 가 EOF 를 받고 serve() 를 끝내도록 한다.
+                socket.shutdownInput();
+            } catch (IOException | UnsupportedOperationException e) {
+                // SSLSocket 은 shutdownInput 을 지원하지 않을 수 있다. 응답은 모두 flush 되었으므로 닫는다.
+                closeSocket();
+            }
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug(e.getMessage());
+        }
+    }
+
+    private void resetStream(int streamId, int errorCode) throws IOException {
+        byte[] payload = new byte[4];
+        Http2Frame.writeInt(payload, 0, errorCode);
+        writeFrame(Http2Frame.RST_STREAM, 0, streamId, payload);
+        removeStream(streamId);
+    }
+
+    private void resetQuietly(int streamId, int errorCode) {
+        try {
+            resetStream(streamId, errorCode);
+        } catch (IOException e) {
+            log.debug(e.getMessage());
+        }
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = new byte[4];
+        Http2Frame.writeInt(payload, 0, increment);
+        writeFrame(Http2Frame.WINDOW_UPDATE, 0, streamId, payload);
+    }
+
+    private void writeGoAway(int errorCode) throws IOException {
+        byte[] payload = new byte[8];
+        Http2Frame.writeInt(payload, 0, lastStreamId);
+        Http2Frame.writeInt(payload, 4, errorCode);
+        writeFrame(Http2Frame.GOAWAY, 0, 0, payload);
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        synchronized (writeLock) {
+            Http2Frame.write(out, type, flags, streamId, payload, 0, payload.length);
+            out.flush();
+        }
+    }
+
+    private void close() {
+        synchronized (flowLock) {
+            closed = true;
+            flowLock.notifyAll();
+        }
+        streamExecutor.shutdown();
+        try {
+            if (!streamExecutor.awaitTermination(STREAM_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                streamExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            streamExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
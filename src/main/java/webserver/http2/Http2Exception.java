@@ -0,0 +1,58 @@
+package webserver.http2;
+
+import java.io.IOException;
+
+/**
+ * streamId 가 0 이면 connection error (GOAWAY), 아니면 해당 stream 만 RST_STREAM 으로 닫는다.
+ */
+public class Http2Exception extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    static final int NO_ERROR = 0x0;
+    static final int PROTOCOL_ERROR = 0x1;
+    static final int INTERNAL_ERROR = 0x2;
+    static final int FLOW_CONTROL_ERROR = 0x3;
+    static final int STREAM_CLOSED = 0x5;
+    static final int FRAME_SIZE_ERROR = 0x6;
+    static final int REFUSED_STREAM = 0x7;
+    static final int CANCEL = 0x8;
+    static final int COMPRESSION_ERROR = 0x9;
+    static final int ENHANCE_YOUR_CALM = 0xb;
+
+    private final int errorCode;
+    private final int streamId;
+
+    Http2Exception(int errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    static Http2Exception connection(int errorCode, String message) {
+        return new Http2Exception(errorCode, 0, message);
+    }
+
+    static Http2Exception stream(int errorCode, int streamId, String message) {
+        return new Http2Exception(errorCode, streamId, message);
+    }
+
+    static Http2Exception protocol(String message) {
+        return connection(PROTOCOL_ERROR, message);
+    }
+
+    static Http2Exception compression(String message) {
+        return connection(COMPRESSION_ERROR, message);
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public boolean isStreamError() {
+        return streamId != 0;
+    }
+}
@@ -0,0 +1,122 @@
+package webserver.http2;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * HTTP/2 frame (RFC 7540 4.1) : 9 byte header + payload
+ */
+class Http2Frame {
+    static final int HEADER_LENGTH = 9;
+
+    static final int DATA = 0x0;
+    static final int HEADERS = 0x1;
+    static final int PRIORITY = 0x2;
+    static final int RST_STREAM = 0x3;
+    static final int SETTINGS = 0x4;
+    static final int PUSH_PROMISE = 0x5;
+    static final int PING = 0x6;
+    static final int GOAWAY = 0x7;
+    static final int WINDOW_UPDATE = 0x8;
+    static final int CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+
+    private final int type;
+    private final int flags;
+    private final int streamId;
+    private final byte[] payload;
+
+    Http2Frame(int type, int flags, int streamId, byte[] payload) {
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    static Http2Frame read(DataInputStream in, int maxFrameSize) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        in.readFully(header);
+
+        int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+        int type = header[3] & 0xff;
+        int flags = header[4] & 0xff;
+        int streamId = readInt(header, 5) & 0x7fffffff;
+        if (length > maxFrameSize) {
+            throw Http2Exception.connection(Http2Exception.FRAME_SIZE_ERROR, "Frame too large: " + length);
+        }
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Http2Frame(type, flags, streamId, payload);
+    }
+
+    static void write(OutputStream out, int type, int flags, int streamId, byte[] payload, int offset, int length)
+            throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = (byte) (length >>> 16);
+        header[1] = (byte) (length >>> 8);
+        header[2] = (byte) length;
+        header[3] = (byte) type;
+        header[4] = (byte) flags;
+        writeInt(header, 5, streamId);
+        out.write(header);
+        out.write(payload, offset, length);
+    }
+
+    static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    int getType() {
+        return type;
+    }
+
+    boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    int getStreamId() {
+        return streamId;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * PADDED flag 가 있으면 앞의 pad length 와 뒤의 padding 을 제외한 [offset, end) 범위를 돌려준다.
+     * PRIORITY flag 가 있는 HEADERS 는 5 byte 의 priority 정보도 건너뛴다.
+     */
+    int[] contentRange() throws Http2Exception {
+        int offset = 0;
+        int end = payload.length;
+        if (hasFlag(FLAG_PADDED)) {
+            if (payload.length < 1) {
+                throw Http2Exception.protocol("Missing pad length");
+            }
+            end -= payload[0] & 0xff;
+            offset = 1;
+        }
+        if (type == HEADERS && hasFlag(FLAG_PRIORITY)) {
+            offset += 5;
+        }
+        if (end < offset) {
+            throw Http2Exception.protocol("Padding exceeds frame payload");
+        }
+        return new int[] {offset, end};
+    }
+}
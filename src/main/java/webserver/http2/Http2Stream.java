@@ -0,0 +1,65 @@
+package webserver.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+class Http2Stream {
+    private final int id;
+    private final List<HeaderField> headers;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    // Http2Connection 의 flowLock 으로 보호된다.
+    private int sendWindow;
+    private volatile boolean endStreamReceived;
+    private volatile boolean reset;
+
+    Http2Stream(int id, List<HeaderField> headers, int initialSendWindow) {
+        this.id = id;
+        this.headers = headers;
+        this.sendWindow = initialSendWindow;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    List<HeaderField> getHeaders() {
+        return headers;
+    }
+
+    void appendBody(byte[] data, int offset, int length) {
+        body.write(data, offset, length);
+    }
+
+    int getBodySize() {
+        return body.size();
+    }
+
+    byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    int getSendWindow() {
+        return sendWindow;
+    }
+
+    void setSendWindow(int sendWindow) {
+        this.sendWindow = sendWindow;
+    }
+
+    boolean isEndStreamReceived() {
+        return endStreamReceived;
+    }
+
+    void setEndStreamReceived() {
+        this.endStreamReceived = true;
+    }
+
+    boolean isReset() {
+        return reset;
+    }
+
+    void setReset() {
+        this.reset = true;
+    }
+}
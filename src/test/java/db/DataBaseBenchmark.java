@@ -0,0 +1,99 @@
+package db;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import model.User;
+
+/**
+ * DataBase 에 사용자를 넣은 뒤 (보조 index 포함) heap 사용량, GC 시간, 조회 latency 를 잰다.
+ * GC 통계가 섞이지 않도록 저장소마다 JVM 을 따로 띄워 실행한다.
+ *
+ * 실행 : java -Xmx2g [-Ddb.storage=offheap] -cp target/classes:target/test-classes:target/dependency/*
+ * db.DataBaseBenchmark [users]
+ */
+public class DataBaseBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(DataBaseBenchmark.class);
+    private static final int LOOKUPS = 2_000_000;
+    private static final int PREFIX_QUERIES = 200_000;
+
+    public static void main(String[] args) {
+        String storage = System.getProperty("db.storage", "heap");
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long heapBefore = usedHeapAfterGc();
+        long gcTimeBefore = gcTime();
+        long gcCountBefore = gcCount();
+
+        for (int i = 0; i < count; i++) {
+            DataBase.addUser(new User("user" + i, "password" + i, "name" + i, "user" + i + "@slipp.net"));
+        }
+
+        long gcTimeLoad = gcTime() - gcTimeBefore;
+        long gcCountLoad = gcCount() - gcCountBefore;
+
+        long start = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - start) / 1_000_000;
+        long heapUsed = usedHeapAfterGc() - heapBefore;
+
+        Random random = new Random(42);
+        int checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            checksum += DataBase.findUserById("user" + random.nextInt(count)).getEmail().length();
+        }
+        double lookupNanos = (double) (System.nanoTime() - start) / LOOKUPS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            checksum += DataBase.findUserByEmail("user" + random.nextInt(count) + "@slipp.net").getName().length();
+        }
+        double emailLookupNanos = (double) (System.nanoTime() - start) / LOOKUPS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < PREFIX_QUERIES; i++) {
+            for (User user : DataBase.findUsersByNamePrefix("name" + random.nextInt(count / 10), 0, 10)) {
+                checksum += user.getUserId().length();
+            }
+        }
+        double prefixQueryNanos = (double) (System.nanoTime() - start) / PREFIX_QUERIES;
+
+        log.info("storage={} users={}", storage, count);
+        log.info("heap used          : {} MB", heapUsed / (1024 * 1024));
+        log.info("direct memory used : {} MB", directMemoryUsed() / (1024 * 1024));
+        log.info("GC while loading   : {} collections, {} ms", gcCountLoad, gcTimeLoad);
+        log.info("full GC pause      : {} ms", fullGcMillis);
+        log.info("findUserById       : {} ns/op", String.format("%.1f", lookupNanos));
+        log.info("findUserByEmail    : {} ns/op", String.format("%.1f", emailLookupNanos));
+        log.info("name prefix, 10    : {} ns/op (checksum {})", String.format("%.1f", prefixQueryNanos), checksum);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long directMemoryUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+    }
+}
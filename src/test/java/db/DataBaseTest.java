@@ -0,0 +1,122 @@
+package db;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.User;
+
+public class DataBaseTest {
+    @Before
+    public void setUp() {
+        DataBase.setUserStore(createUserStore());
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        DataBase.setUserStore(new HeapUserStore());
+    }
+
+    UserStore createUserStore() {
+        return new HeapUserStore();
+    }
+
+    private static List<String> userIds(List<User> users) {
+        return users.stream().map(User::getUserId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void findUserByEmail() {
+        DataBase.addUser(new User("email1", "password", "name", "Email1@Example.com"));
+
+        assertThat(DataBase.findUserByEmail("email1@example.com").getUserId(), is("email1"));
+        assertThat(DataBase.findUserByEmail("none@example.com"), is(nullValue()));
+    }
+
+    @Test
+    public void addUser_duplicateEmail() {
+        assertThat(DataBase.addUser(new User("dup1", "password", "name", "dup@example.com")), is(true));
+        assertThat(DataBase.addUser(new User("dup2", "password", "name", "dup@example.com")), is(false));
+        assertThat(DataBase.findUserById("dup2"), is(nullValue()));
+    }
+
+    @Test
+    public void addUser_update() {
+        DataBase.addUser(new User("update1", "password", "before", "before@example.com"));
+        assertThat(DataBase.addUser(new User("update1", "password", "after", "after@example.com")), is(true));
+
+        assertThat(DataBase.findUserByEmail("before@example.com"), is(nullValue()));
+        assertThat(DataBase.findUserByEmail("after@example.com").getName(), is("after"));
+        assertThat(DataBase.findUsersByNamePrefix("before", 0, 10).isEmpty(), is(true));
+        assertThat(userIds(DataBase.findUsersByNamePrefix("after", 0, 10)), is(List.of("update1")));
+    }
+
+    @Test
+    public void addUser_updateKeepsEmail() {
+        DataBase.addUser(new User("keep1", "password", "before", "Keep@Example.com"));
+        assertThat(DataBase.addUser(new User("keep1", "password", "after", "keep@example.com")), is(true));
+
+        assertThat(DataBase.findUserByEmail("KEEP@example.com").getName(), is("after"));
+        assertThat(DataBase.addUser(new User("keep2", "password", "other", "keep@example.com")), is(false));
+        assertThat(userIds(DataBase.findUsersByUserIdPrefix("keep", 0, 10)), is(List.of("keep1")));
+    }
+
+    @Test
+    public void findAll() {
+        DataBase.addUser(new User("all1", "password", "name", "all1@example.com"));
+        DataBase.addUser(new User("all2", "password", "name", "all2@example.com"));
+
+        Collection<User> users = DataBase.findAll();
+        assertThat(users.size(), is(2));
+        try {
+            users.clear();
+            fail("findAll must return an unmodifiable collection");
+        } catch (UnsupportedOperationException e) {
+            assertThat(DataBase.findAll().size(), is(2));
+        }
+    }
+
+    @Test
+    public void findUsersByPrefix() {
+        DataBase.addUser(new User("prefix-c", "password", "Prefix Kim", "c@prefix.com"));
+        DataBase.addUser(new User("prefix-a", "password", "Prefix Lee", "a@prefix.com"));
+        DataBase.addUser(new User("prefix-b", "password", "Prefix Kim", "b@prefix.com"));
+
+        assertThat(userIds(DataBase.findUsersByUserIdPrefix("prefix-", 0, 10)),
+                is(List.of("prefix-a", "prefix-b", "prefix-c")));
+        assertThat(userIds(DataBase.findUsersByUserIdPrefix("prefix-", 1, 1)), is(List.of("prefix-b")));
+        assertThat(userIds(DataBase.findUsersByNamePrefix("Prefix K", 0, 10)), is(List.of("prefix-b", "prefix-c")));
+    }
+
+    @Test
+    public void addUser_concurrent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger added = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            int n = i;
+            executor.execute(() -> {
+                // 같은 email 로 두 명씩 가입을 시도한다.
+                if (DataBase.addUser(new User("concurrent" + n, "password", "concurrent", "c" + n / 2 + "@con.com"))) {
+                    added.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(added.get(), is(500));
+        assertThat(DataBase.findUsersByUserIdPrefix("concurrent", 0, 1000).size(), is(500));
+        assertThat(DataBase.findUsersByNamePrefix("concurrent", 0, 1000).size(), is(500));
+    }
+}
@@ -0,0 +1,11 @@
+package db;
+
+/**
+ * DataBaseTest 의 시나리오를 OffHeapUserStore 로 돌린다.
+ */
+public class OffHeapDataBaseTest extends DataBaseTest {
+    @Override
+    UserStore createUserStore() {
+        return new OffHeapUserStore();
+    }
+}
@@ -0,0 +1,153 @@
+package db;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import model.User;
+
+public class OffHeapUserStoreTest {
+    @Test
+    public void putAndGet() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        assertThat(store.put(new User("javajigi", "password", "자바지기", "javajigi@slipp.net")), is(nullValue()));
+
+        User user = store.get("javajigi");
+        assertThat(user.getUserId(), is("javajigi"));
+        assertThat(user.getPassword(), is("password"));
+        assertThat(user.getName(), is("자바지기"));
+        assertThat(user.getEmail(), is("javajigi@slipp.net"));
+        assertThat(store.get("none"), is(nullValue()));
+    }
+
+    @Test
+    public void put_nullField() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.put(new User("userId", null, "", null));
+
+        User user = store.get("userId");
+        assertThat(user.getPassword(), is(nullValue()));
+        assertThat(user.getName(), is(""));
+        assertThat(user.getEmail(), is(nullValue()));
+    }
+
+    @Test
+    public void put_update() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.put(new User("userId", "password", "before", "before@slipp.net"));
+        User old = store.put(new User("userId", "password", "after", "after@slipp.net"));
+
+        assertThat(old.getName(), is("before"));
+        assertThat(store.get("userId").getName(), is("after"));
+        assertThat(store.size(), is(1));
+    }
+
+    @Test
+    public void put_resizeAndNewSegment() {
+        OffHeapUserStore store = new OffHeapUserStore(1024);
+        for (int i = 0; i < 10_000; i++) {
+            store.put(new User("user" + i, "password" + i, "name" + i, "user" + i + "@slipp.net"));
+        }
+
+        assertThat(store.size(), is(10_000));
+        assertThat(store.values().size(), is(10_000));
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(store.get("user" + i).getEmail(), is("user" + i + "@slipp.net"));
+        }
+    }
+
+    @Test
+    public void indexes_update() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.put(new User("userId", "password", "before", "Before@slipp.net"));
+        store.put(new User("userId", "password", "after", "after@slipp.net"));
+
+        assertThat(store.getByEmail("before@slipp.net"), is(nullValue()));
+        assertThat(store.getByEmail("after@slipp.net").getName(), is("after"));
+        assertThat(store.findByNamePrefix("before", 0, 10).isEmpty(), is(true));
+        assertThat(store.findByNamePrefix("after", 0, 10).size(), is(1));
+        assertThat(store.findByUserIdPrefix("user", 0, 10).size(), is(1));
+    }
+
+    @Test
+    public void compaction_reclaimsUpdatedRecords() {
+        OffHeapUserStore store = new OffHeapUserStore(1024);
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.put(new User("user" + i, "password" + round, "name" + i, "user" + i + "@slipp.net"));
+            }
+        }
+        long liveBytes = 0;
+        for (int i = 0; i < 100; i++) {
+            // field 마다 길이 2 byte
+            liveBytes += 4 * 2 + ("user" + i).length() * 2 + "password199".length() + ("name" + i).length()
+                    + "@slipp.net".length();
+        }
+
+        assertThat(store.liveBytes(), is(liveBytes));
+        assertThat("allocated " + store.allocatedBytes() + " bytes for " + store.liveBytes() + " live bytes",
+                store.allocatedBytes() <= 2 * store.liveBytes() + 3 * 1024, is(true));
+        for (int i = 0; i < 100; i++) {
+            User user = store.get("user" + i);
+            assertThat(user.getPassword(), is("password199"));
+            assertThat(store.getByEmail("user" + i + "@slipp.net").getUserId(), is("user" + i));
+        }
+        assertThat(store.findByUserIdPrefix("user", 0, 200).size(), is(100));
+        assertThat(store.findByNamePrefix("name", 0, 200).size(), is(100));
+    }
+
+    @Test
+    public void compaction_keepsOldUsersReadable() {
+        OffHeapUserStore store = new OffHeapUserStore(1024);
+        store.put(new User("userId", "password", "before", "before@slipp.net"));
+        User before = store.get("userId");
+        for (int i = 0; i < 1_000; i++) {
+            store.put(new User("userId", "password" + i, "after", "after@slipp.net"));
+        }
+
+        assertThat(before.getName(), is("before"));
+        assertThat(before.getEmail(), is("before@slipp.net"));
+        assertThat(store.allocatedBytes() <= 2 * 1024, is(true));
+    }
+
+    // 무작위로 추가, 수정한 뒤 HeapUserStore 와 같은 결과를 내는지 비교한다.
+    @Test
+    public void indexes_sameAsHeapUserStore() {
+        OffHeapUserStore offHeap = new OffHeapUserStore(64 * 1024);
+        HeapUserStore heap = new HeapUserStore();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int n = random.nextInt(5_000);
+            String name = random.nextInt(10) == 0 ? null : "name" + random.nextInt(500);
+            User user = new User("user" + n, "password", name, "user" + n + "-" + i + "@slipp.net");
+            offHeap.put(user);
+            heap.put(user);
+        }
+
+        assertThat(offHeap.size(), is(heap.size()));
+        for (int n = 0; n < 5_000; n++) {
+            User user = heap.get("user" + n);
+            if (user != null) {
+                String email = user.getEmail();
+                assertThat(offHeap.getByEmail(email).getUserId(), is(user.getUserId()));
+            }
+        }
+        for (String prefix : List.of("", "user1", "user42", "user9999", "x")) {
+            assertThat(userIds(offHeap.findByUserIdPrefix(prefix, 3, 200)),
+                    is(userIds(heap.findByUserIdPrefix(prefix, 3, 200))));
+        }
+        for (String prefix : List.of("", "name1", "name42", "name499", "x")) {
+            assertThat(userIds(offHeap.findByNamePrefix(prefix, 5, 300)),
+                    is(userIds(heap.findByNamePrefix(prefix, 5, 300))));
+        }
+    }
+
+    private static List<String> userIds(List<User> users) {
+        return users.stream().map(User::getUserId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,117 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * loopback 에서 TLS handshake 처리량을 세션 재개(resumption) 유무로 비교한다.
+ * 서버 쪽은 WebServer 와 같이 TlsHandshaker 로 handshake 하고 TlsSocket 으로 응답한다.
+ *
+ * 실행 : java -cp target/classes:target/test-classes:target/dependency/* webserver.TlsHandshakeBenchmark
+ * keystore.p12 password [handshakes]
+ */
+public class TlsHandshakeBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TlsHandshakeBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        Path keyStorePath = Paths.get(args[0]);
+        char[] password = args[1].toCharArray();
+        int handshakes = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        SSLContext serverContext = SslContextFactory.create(keyStorePath, password);
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        TlsHandshaker handshaker = new TlsHandshaker(serverContext, null, Runtime.getRuntime().availableProcessors(),
+                1024, 10_000, connection -> handlers.execute(() -> respond(connection)));
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        Thread acceptor = new Thread(() -> acceptLoop(serverChannel, handshaker), "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        SSLContext clientContext = createClientContext(keyStorePath, password);
+        int port = serverChannel.socket().getLocalPort();
+
+        // JIT warm-up
+        run(clientContext, port, handshakes / 10, true);
+        run(clientContext, port, handshakes / 10, false);
+
+        double full = run(clientContext, port, handshakes, false);
+        double resumed = run(clientContext, port, handshakes, true);
+        log.info("full handshake    : {} handshakes/s", String.format("%.1f", full));
+        log.info("resumed handshake : {} handshakes/s", String.format("%.1f", resumed));
+
+        serverChannel.close();
+        handshaker.shutdown(System.currentTimeMillis() + 1000);
+        handlers.shutdown();
+    }
+
+    private static double run(SSLContext clientContext, int port, int handshakes, boolean resume) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < handshakes; i++) {
+            try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory()
+                    .createSocket(InetAddress.getLoopbackAddress(), port)) {
+                socket.setTcpNoDelay(true);
+                socket.startHandshake();
+                // TLS 1.3 의 session ticket 은 handshake 이후에 전달되므로 한 바이트를 읽어 받아둔다.
+                socket.getInputStream().read();
+                if (!resume) {
+                    socket.getSession().invalidate();
+                }
+            }
+        }
+        return handshakes / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    private static void acceptLoop(ServerSocketChannel serverChannel, TlsHandshaker handshaker) {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                handshaker.submit(channel.socket());
+            } catch (IOException e) {
+                log.debug(e.getMessage());
+            }
+        }
+    }
+
+    private static void respond(Socket connection) {
+        try (Socket socket = connection) {
+            socket.getOutputStream().write(1);
+            socket.getOutputStream().flush();
+        } catch (IOException e) {
+            log.debug(e.getMessage());
+        }
+    }
+
+    private static SSLContext createClientContext(Path keyStorePath, char[] password) throws Exception {
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            trustStore.load(in, password);
+        }
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory
+                .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+}
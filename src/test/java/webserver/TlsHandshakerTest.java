@@ -0,0 +1,199 @@
+package webserver;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.function.Consumer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TlsHandshakerTest {
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static SSLContext serverContext;
+    private static SSLContext clientContext;
+
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private TlsHandshaker handshaker;
+
+    @BeforeClass
+    public static void createKeyStore() throws Exception {
+        Path keyStore = folder.getRoot().toPath().resolve("server.p12");
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "server", "-keyalg", "EC",
+                "-dname", "CN=localhost", "-validity", "1", "-storetype", "PKCS12",
+                "-keystore", keyStore.toString(), "-storepass", new String(PASSWORD))
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+        assertThat(process.waitFor(), is(0));
+
+        serverContext = SslContextFactory.create(keyStore, PASSWORD);
+        clientContext = clientContext(keyStore, PASSWORD);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (serverChannel != null) {
+            serverChannel.close();
+            acceptor.join(5000);
+        }
+        if (handshaker != null) {
+            handshaker.shutdown(System.currentTimeMillis() + 1000);
+        }
+    }
+
+    @Test
+    public void fullHandshakeAndHttpRoundTrip() throws Exception {
+        start(1, 16, 5000, connection -> new RequestHandler(connection).start());
+
+        try (SSLSocket socket = connect()) {
+            assertThat(get(socket, "/index.html"), startsWith("HTTP/1.1 200"));
+        }
+    }
+
+    @Test
+    public void resumedHandshakeReusesSession() throws Exception {
+        start(1, 16, 5000, connection -> new RequestHandler(connection).start());
+
+        SSLSession first;
+        try (SSLSocket socket = connect()) {
+            // TLS 1.3 의 session ticket 은 handshake 뒤에 오므로 응답까지 읽고 닫는다.
+            assertThat(get(socket, "/index.html"), startsWith("HTTP/1.1 200"));
+            first = socket.getSession();
+        }
+        try (SSLSocket socket = connect()) {
+            assertThat(get(socket, "/index.html"), startsWith("HTTP/1.1 200"));
+            assertThat(socket.getSession().getCreationTime(), is(first.getCreationTime()));
+        }
+    }
+
+    @Test
+    public void idleClientIsClosedAtTimeoutWithoutBlockingOthers() throws Exception {
+        long timeoutMillis = 1000;
+        start(1, 16, timeoutMillis, connection -> new RequestHandler(connection).start());
+
+        try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), serverChannel.socket().getLocalPort())) {
+            long start = System.currentTimeMillis();
+            idle.setSoTimeout(5000);
+
+            // ClientHello 를 보내지 않는 연결이 있어도 다른 handshake 는 바로 끝난다.
+            try (SSLSocket socket = connect()) {
+                assertThat(get(socket, "/index.html"), startsWith("HTTP/1.1 200"));
+            }
+            assertThat(System.currentTimeMillis() - start < timeoutMillis, is(true));
+
+            assertThat(readQuietly(idle.getInputStream()), is(-1));
+            long elapsed = System.currentTimeMillis() - start;
+            assertThat("closed after " + elapsed + " ms", elapsed >= timeoutMillis, is(true));
+            assertThat("closed after " + elapsed + " ms", elapsed < timeoutMillis + 2000, is(true));
+        }
+    }
+
+    @Test
+    public void rejectsConnectionsOverMaxPending() throws Exception {
+        start(1, 1, 5000, connection -> new RequestHandler(connection).start());
+
+        int port = serverChannel.socket().getLocalPort();
+        try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), port);
+                Socket rejected = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            rejected.setSoTimeout(2000);
+            assertThat(readQuietly(rejected.getInputStream()), is(-1));
+
+            // 자리가 비면 다시 받는다.
+            idle.close();
+            Thread.sleep(200);
+            try (SSLSocket socket = connect()) {
+                assertThat(get(socket, "/index.html"), startsWith("HTTP/1.1 200"));
+            }
+        }
+    }
+
+    private void start(int taskThreads, int maxPending, long timeoutMillis, Consumer<Socket> onEstablished)
+            throws IOException {
+        handshaker = new TlsHandshaker(serverContext, null, taskThreads, maxPending, timeoutMillis, onEstablished);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    handshaker.submit(serverChannel.accept().socket());
+                }
+            } catch (IOException e) {
+                // tearDown 에서 닫았다.
+            }
+        }, "tls-test-acceptor");
+        acceptor.start();
+    }
+
+    private SSLSocket connect() throws IOException {
+        SSLSocket socket = (SSLSocket) clientContext.getSocketFactory()
+                .createSocket(InetAddress.getLoopbackAddress(), serverChannel.socket().getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static String get(Socket socket, String path) throws IOException {
+        socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String statusLine = in.readLine();
+        while (in.readLine() != null) {
+            // 응답을 끝까지 읽어야 TLS 1.3 session ticket 도 받는다.
+        }
+        return statusLine;
+    }
+
+    /**
+     * 서버가 닫은 연결은 -1 을 읽거나, 읽지 않은 byte 가 남아 있으면 reset 된다.
+     */
+    private static int readQuietly(InputStream in) throws IOException {
+        try {
+            return in.read();
+        } catch (SocketException e) {
+            return -1;
+        }
+    }
+
+    private static SSLContext clientContext(Path keyStorePath, char[] password) throws Exception {
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            trustStore.load(in, password);
+        }
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory
+                .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+}
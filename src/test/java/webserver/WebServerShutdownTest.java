@@ -0,0 +1,135 @@
+package webserver;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * shutdown hook 은 SIGTERM 으로만 확인할 수 있으므로 WebServer 를 별도 JVM 으로 띄워 확인한다.
+ */
+public class WebServerShutdownTest {
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 4000;
+
+    private Process server;
+    private int port;
+    private volatile boolean loading = true;
+    private final List<Thread> loaders = new ArrayList<>();
+    private final AtomicInteger served = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        server = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Dwebserver.shutdownTimeoutMillis=" + SHUTDOWN_TIMEOUT_MILLIS, "webserver.WebServer",
+                String.valueOf(port))
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+        awaitListening();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        loading = false;
+        for (Thread loader : loaders) {
+            loader.join(5000);
+        }
+        server.destroyForcibly();
+    }
+
+    @Test
+    public void inFlightRequestCompletesWhileNewConnectionsKeepArriving() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            Thread loader = new Thread(this::load, "loader-" + i);
+            loader.start();
+            loaders.add(loader);
+        }
+
+        try (Socket inFlight = connect()) {
+            OutputStream out = inFlight.getOutputStream();
+            out.write("GET /index.html HTTP/1.1\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            Thread.sleep(200);
+
+            server.destroy();
+            long terminated = System.currentTimeMillis();
+
+            // drain 예산이 지나면 부하가 계속 들어와도 서버소켓을 닫는다.
+            Thread.sleep(1000);
+            assertThat(served.get() > 0, is(true));
+            try (Socket late = connect()) {
+                fail("connection accepted after the drain budget");
+            } catch (ConnectException e) {
+                // 예상한 결과
+            }
+
+            out.write("Host: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(inFlight.getInputStream(), StandardCharsets.ISO_8859_1));
+            assertThat(in.readLine(), startsWith("HTTP/1.1 200"));
+            inFlight.close();
+
+            assertThat(server.waitFor(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), is(true));
+            long elapsed = System.currentTimeMillis() - terminated;
+            assertThat("shutdown took " + elapsed + " ms", elapsed < SHUTDOWN_TIMEOUT_MILLIS - 1000, is(true));
+        }
+    }
+
+    private void load() {
+        while (loading) {
+            try (Socket socket = connect()) {
+                socket.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                if (in.readLine() != null) {
+                    served.incrementAndGet();
+                }
+            } catch (IOException e) {
+                // shutdown 뒤에는 연결이 거부된다.
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private void awaitListening() throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try (Socket socket = connect()) {
+                return;
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline || !server.isAlive()) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package webserver.http2;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HpackTest {
+    private static byte[] hex(String hex) {
+        String compact = hex.replace(" ", "");
+        byte[] bytes = new byte[compact.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(compact.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    // RFC 7541 C.4 Request Examples with Huffman Coding
+    @Test
+    public void decode_huffman() throws Exception {
+        HpackDecoder decoder = new HpackDecoder(4096, 65536);
+
+        List<HeaderField> first = decoder.decode(hex("8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff"));
+        assertThat(first.toString(), is("[:method: GET, :scheme: http, :path: /, :authority: www.example.com]"));
+
+        List<HeaderField> second = decoder.decode(hex("8286 84be 5886 a8eb 1064 9cbf"));
+        assertThat(second.toString(),
+                is("[:method: GET, :scheme: http, :path: /, :authority: www.example.com, cache-control: no-cache]"));
+    }
+
+    @Test(expected = Http2Exception.class)
+    public void decode_invalidIndex() throws Exception {
+        new HpackDecoder(4096, 65536).decode(hex("be"));
+    }
+
+    @Test
+    public void encode_decode() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096, 65536);
+        List<HeaderField> headers = Arrays.asList(
+                new HeaderField(":status", "200"),
+                new HeaderField("content-type", "text/html;charset=utf-8"),
+                new HeaderField("content-length", "10276"),
+                new HeaderField("set-cookie", "logined=true; Path=/"));
+
+        byte[] first = encoder.encode(headers);
+        assertThat(decoder.decode(first).toString(), is(headers.toString()));
+
+        // 두 번째 응답의 content-type 은 dynamic table index 하나로 인코딩된다.
+        byte[] second = encoder.encode(headers);
+        assertThat(decoder.decode(second).toString(), is(headers.toString()));
+        assertTrue(second.length < first.length);
+    }
+
+    // RFC 7541 4.2: header block 사이에 size 가 여러 번 바뀌면 가장 작은 값과 마지막 값을 차례로 알린다.
+    @Test
+    public void encode_tableSizeChangedTwice() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096, 65536);
+        List<HeaderField> headers = Arrays.asList(new HeaderField("content-type", "text/html;charset=utf-8"));
+        decoder.decode(encoder.encode(headers));
+
+        encoder.setMaxTableSize(0);
+        encoder.setMaxTableSize(4096);
+        byte[] block = encoder.encode(headers);
+
+        assertThat(Arrays.copyOf(block, 4), is(hex("203f e11f")));
+        assertThat(decoder.decode(block).toString(), is(headers.toString()));
+    }
+
+    @Test
+    public void encode_tableSizeChangedOnce() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setMaxTableSize(8192);
+        encoder.setMaxTableSize(1024);
+
+        byte[] block = encoder.encode(Arrays.asList(new HeaderField(":status", "200")));
+
+        assertThat(block, is(hex("3fe1 0788")));
+    }
+
+    @Test
+    public void huffman() throws Exception {
+        byte[] data = "custom-value/\u00ff\u0000".getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(data, out);
+
+        assertThat(out.size(), is(Huffman.encodedLength(data)));
+        assertThat(Huffman.decode(out.toByteArray(), 0, out.size()), is(data));
+    }
+}
@@ -0,0 +1,96 @@
+package webserver.http2;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.HttpRequest;
+import webserver.http2.Http1Bridge.Http1Response;
+
+public class Http1BridgeTest {
+    private static List<HeaderField> request(String path, HeaderField... extra) {
+        List<HeaderField> headers = new ArrayList<>(Arrays.asList(
+                new HeaderField(":method", "GET"),
+                new HeaderField(":scheme", "https"),
+                new HeaderField(":path", path),
+                new HeaderField(":authority", "localhost")));
+        headers.addAll(Arrays.asList(extra));
+        return headers;
+    }
+
+    private static void assertMalformed(List<HeaderField> headers) throws Exception {
+        try {
+            Http1Bridge.toHttpRequest(1, headers, new byte[0]);
+            fail("malformed request was accepted");
+        } catch (Http2Exception e) {
+            assertThat(e.isStreamError(), is(true));
+            assertThat(e.getStreamId(), is(1));
+            assertThat(e.getErrorCode(), is(Http2Exception.PROTOCOL_ERROR));
+        }
+    }
+
+    @Test
+    public void toHttpRequest() throws Exception {
+        HttpRequest request = Http1Bridge.toHttpRequest(1, request("/index.html",
+                new HeaderField("cookie", "a=1"),
+                new HeaderField("cookie", "logined=true"),
+                new HeaderField("accept", "text/html")), new byte[0]);
+
+        assertThat(request.getMethod(), is("GET"));
+        assertThat(request.getUrl(), is("/index.html"));
+        assertThat(request.getHost(), is("localhost"));
+        assertThat(request.getAccept(), is("text/html"));
+        assertThat(request.getCookie(), is("a=1; logined=true"));
+    }
+
+    @Test
+    public void toHttpRequest_crlfInValue() throws Exception {
+        assertMalformed(request("/user/list.html", new HeaderField("x-a", "b\r\nCookie: logined=true")));
+        assertMalformed(request("/user/list.html", new HeaderField("x-a", "b\nCookie: logined=true")));
+        assertMalformed(request("/user/list.html", new HeaderField("x-a", "b\rc")));
+    }
+
+    @Test
+    public void toHttpRequest_nulInValue() throws Exception {
+        assertMalformed(request("/index.html", new HeaderField("x-a", "b\u0000c")));
+    }
+
+    @Test
+    public void toHttpRequest_invalidName() throws Exception {
+        assertMalformed(request("/index.html", new HeaderField("Cookie", "logined=true")));
+        assertMalformed(request("/index.html", new HeaderField("x-a\r\ncookie", "logined=true")));
+        assertMalformed(request("/index.html", new HeaderField("x a", "b")));
+        assertMalformed(request("/index.html", new HeaderField("x:a", "b")));
+        assertMalformed(request("/index.html", new HeaderField("", "b")));
+    }
+
+    @Test
+    public void toHttpRequest_spaceInPath() throws Exception {
+        assertMalformed(request("/index.html HTTP/1.1\r\nCookie: logined=true\r\n\r\nGET /user/list.html"));
+        assertMalformed(request("/a b"));
+    }
+
+    @Test
+    public void toHttpRequest_crlfInPseudoHeader() throws Exception {
+        assertMalformed(request("/index.html", new HeaderField(":authority", "localhost\r\nCookie: logined=true")));
+    }
+
+    @Test
+    public void parseResponse() throws Exception {
+        byte[] message = ("HTTP/1.1 303 See Other \r\n"
+                + "Location: /index.html\r\n"
+                + "Connection: close\r\n"
+                + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+        Http1Response response = Http1Bridge.parseResponse(message);
+
+        assertThat(response.getHeaders().toString(), is("[:status: 303, location: /index.html]"));
+        assertThat(response.getBody().length, is(0));
+    }
+}
@@ -0,0 +1,173 @@
+package webserver.http2;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.HttpRequest;
+
+public class Http2ConnectionTest {
+    private final List<HttpRequest> dispatched = new CopyOnWriteArrayList<>();
+    private final HpackEncoder encoder = new HpackEncoder();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private Socket client;
+    private DataInputStream in;
+    private OutputStream out;
+    private Thread server;
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocket listenSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            client = new Socket(listenSocket.getInetAddress(), listenSocket.getLocalPort());
+            Socket accepted = listenSocket.accept();
+            server = new Thread(() -> serve(accepted), "h2-test-server");
+            server.start();
+        }
+        client.setSoTimeout(5000);
+        in = new DataInputStream(client.getInputStream());
+        out = client.getOutputStream();
+
+        out.write(Http2Connection.PREFACE);
+        writeFrame(Http2Frame.SETTINGS, 0, 0, new byte[0]);
+    }
+
+    private void serve(Socket socket) {
+        Http2Connection.RequestDispatcher dispatcher = (request, response) -> {
+            dispatched.add(request);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            response.write("HTTP/1.1 200 OK \r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.ISO_8859_1));
+        };
+        try (Socket connection = socket) {
+            new Http2Connection(connection, connection.getInputStream(), connection.getOutputStream(), dispatcher)
+                    .serve();
+        } catch (IOException e) {
+            // client 가 먼저 닫았다.
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        client.close();
+        server.join(5000);
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        Http2Frame.write(out, type, flags, streamId, payload, 0, payload.length);
+        out.flush();
+    }
+
+    private void writeRequest(int streamId) throws IOException {
+        writeRequest(streamId, new HeaderField(":method", "GET"), new HeaderField(":scheme", "http"),
+                new HeaderField(":path", "/index.html"), new HeaderField(":authority", "localhost"));
+    }
+
+    private void writeRstStream(int streamId) throws IOException {
+        byte[] payload = new byte[4];
+        Http2Frame.writeInt(payload, 0, Http2Exception.CANCEL);
+        writeFrame(Http2Frame.RST_STREAM, 0, streamId, payload);
+    }
+
+    private void writeRequest(int streamId, HeaderField... headers) throws IOException {
+        writeFrame(Http2Frame.HEADERS, Http2Frame.FLAG_END_HEADERS | Http2Frame.FLAG_END_STREAM, streamId,
+                encoder.encode(Arrays.asList(headers)));
+    }
+
+    /**
+     * SETTINGS, WINDOW_UPDATE 등은 건너뛰고 stream 에 대한 다음 frame 을 돌려준다.
+     */
+    private Http2Frame readStreamFrame() throws IOException {
+        while (true) {
+            Http2Frame frame = Http2Frame.read(in, 1 << 20);
+            if (frame.getStreamId() != 0 || frame.getType() == Http2Frame.GOAWAY) {
+                return frame;
+            }
+        }
+    }
+
+    @Test
+    public void request() throws Exception {
+        writeRequest(1);
+
+        Http2Frame headers = readStreamFrame();
+        assertThat(headers.getType(), is(Http2Frame.HEADERS));
+        Http2Frame data = readStreamFrame();
+        assertThat(data.getType(), is(Http2Frame.DATA));
+        assertThat(new String(data.getPayload(), StandardCharsets.ISO_8859_1), is("ok"));
+        assertThat(dispatched.get(0).getUrl(), is("/index.html"));
+    }
+
+    @Test
+    public void request_headerInjection() throws Exception {
+        writeRequest(1, new HeaderField(":method", "GET"), new HeaderField(":scheme", "http"),
+                new HeaderField(":path", "/user/list.html"), new HeaderField(":authority", "localhost"),
+                new HeaderField("x-a", "b\r\nCookie: logined=true"));
+
+        Http2Frame frame = readStreamFrame();
+        assertThat(frame.getType(), is(Http2Frame.RST_STREAM));
+        assertThat(frame.getStreamId(), is(1));
+        assertThat(Http2Frame.readInt(frame.getPayload(), 0), is(Http2Exception.PROTOCOL_ERROR));
+        assertThat(dispatched.isEmpty(), is(true));
+    }
+
+    // CVE-2023-44487: reset 한 stream 도 처리가 끝날 때까지 동시 stream 수에 포함된다.
+    @Test
+    public void reset_streamCountedUntilProcessed() throws Exception {
+        release = new CountDownLatch(1);
+        for (int streamId = 1; streamId < 300; streamId += 2) {
+            writeRequest(streamId);
+            writeRstStream(streamId);
+        }
+
+        // PING ACK 이 오면 앞의 frame 은 모두 처리되었다.
+        writeFrame(Http2Frame.PING, 0, 0, new byte[8]);
+        Http2Frame frame;
+        do {
+            frame = Http2Frame.read(in, 1 << 20);
+        } while (frame.getType() != Http2Frame.PING);
+        assertThat(maxRunning.get() <= 100, is(true));
+    }
+
+    @Test
+    public void rapidReset() throws Exception {
+        release = new CountDownLatch(1);
+        for (int streamId = 1; streamId < 1000; streamId += 2) {
+            writeRequest(streamId);
+            writeRstStream(streamId);
+        }
+
+        Http2Frame frame;
+        do {
+            frame = readStreamFrame();
+        } while (frame.getType() != Http2Frame.GOAWAY);
+        assertThat(Http2Frame.readInt(frame.getPayload(), 4), is(Http2Exception.ENHANCE_YOUR_CALM));
+        assertThat(maxRunning.get() <= 100, is(true));
+    }
+}